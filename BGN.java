@@ -1,5 +1,15 @@
 package BGN;
+import Batch.Batch;
+import CiphertextFile.CiphertextFile;
+import KeyStore.KeyStore;
+import Metrics.Metrics;
+import Randomness.Randomness;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
 /*
  * This source code uses the JPBC (Java Pairing-Based
  * Cryptography) library,
@@ -7,8 +17,9 @@ import java.math.BigInteger;
  * http://gas.dia.unisa.it/projects/jpbc/
  */
 import it.unisa.dia.gas.jpbc.*;
-import it.unisa.dia.gas.plaf.jpbc.pairing.PairingFactory;
 import it.unisa.dia.gas.plaf.jpbc.pairing.a1.TypeA1CurveGenerator;
+import it.unisa.dia.gas.plaf.jpbc.pairing.a1.TypeA1Pairing;
+import it.unisa.dia.gas.plaf.jpbc.pairing.parameters.PropertiesParameters;
 /**
  * @ClassName: BGN
  * @Description: This is a sample java source code of BGN PKE.
@@ -17,21 +28,37 @@ public class BGN {
     /**
      * @ClassName: PublicKey
      * @Description: This is a class for storing the
-     * public key (n,G,GT,e,g,h) of BGN PKE.
+     * public key (n,G,GT,e,g,h) of BGN PKE. It also holds
+     * fixed-base windowed tables for g and h, built on first
+     * use and shared by all threads. It does not depend on a
+     * BGN instance and can be built or loaded on its own.
      */
-    public class PublicKey {
+    public static class PublicKey {
         private BigInteger n;
         private Field<Element> Field_G, Field_GT;
         private Pairing pairing;
+        private PairingParameters params;
         private Element g, h;
+        private long range;
+        private volatile ElementPowPreProcessing gTable, hTable;
         public PublicKey(BigInteger n, Field<Element> G, Field<Element> GT, Pairing pairing, Element g,
                          Element h) {
+            this(n, G, GT, pairing, g, h, T);
+        }
+        public PublicKey(BigInteger n, Field<Element> G, Field<Element> GT, Pairing pairing, Element g,
+                         Element h, long range) {
+            this(n, G, GT, pairing, g, h, range, null);
+        }
+        public PublicKey(BigInteger n, Field<Element> G, Field<Element> GT, Pairing pairing, Element g,
+                         Element h, long range, PairingParameters params) {
+            this.params = params;
             this.n = n;
             this.Field_G = G;
             this.Field_GT = GT;
             this.pairing = pairing;
             this.g = g;
             this.h = h;
+            this.range = range;
         }
         public Element getG() {
             return g;
@@ -42,57 +69,271 @@ public class BGN {
         public BigInteger getN() {
             return n;
         }
+        /**
+         * @Title: getRange
+         * @Description: This function returns the message range
+         * T; messages are in [-T, T].
+         * @return long The message range.
+         */
+        public long getRange() {
+            return range;
+        }
         public Pairing getPairing() {
             return pairing;
         }
+        public PairingParameters getParams() {
+            return params;
+        }
         public Field<Element> getField_G() {
             return Field_G;
         }
         public Field<Element> getField_GT() {
             return Field_GT;
         }
+        /**
+         * @Title: powG
+         * @Description: This function returns g^e using the
+         * fixed-base table of g. The table reads the bits of a
+         * non-negative exponent, so e is first reduced mod n,
+         * which g^n = 1 allows.
+         * @param e
+         * The exponent, possibly negative.
+         * @return Element A new element g^e.
+         */
+        public Element powG(BigInteger e) {
+            ElementPowPreProcessing table = gTable;
+            if (table == null) {
+                synchronized (this) {
+                    table = gTable;
+                    if (table == null) {
+                        gTable = table = g.getElementPowPreProcessing();
+                    }
+                }
+            }
+            return table.pow(exponent(e));
+        }
+        /**
+         * @Title: powH
+         * @Description: This function returns h^e using the
+         * fixed-base table of h. The table reads the bits of a
+         * non-negative exponent, so e is first reduced mod n,
+         * which h^n = 1 allows.
+         * @param e
+         * The exponent, possibly negative.
+         * @return Element A new element h^e.
+         */
+        public Element powH(BigInteger e) {
+            ElementPowPreProcessing table = hTable;
+            if (table == null) {
+                synchronized (this) {
+                    table = hTable;
+                    if (table == null) {
+                        hTable = table = h.getElementPowPreProcessing();
+                    }
+                }
+            }
+            return table.pow(exponent(e));
+        }
+        private BigInteger exponent(BigInteger e) {
+            return e.signum() < 0 || e.compareTo(n) >= 0 ? e.mod(n) : e;
+        }
+        /**
+         * @Title: getFingerprint
+         * @Description: This function returns the SHA-256
+         * fingerprint of (n, g, h), which tags ciphertext files
+         * written under this key.
+         * @return byte[] The key fingerprint.
+         */
+        public byte[] getFingerprint() {
+            return CiphertextFile.fingerprint(n.toByteArray(),
+                    g.toBytes(), h.toBytes());
+        }
     }
     /**
      * @ClassName: PrivateKey
      * @Description: This is a class for storing the
-     * private key (p) of BGN PKE.
+     * private key (p) of BGN PKE. It also holds the
+     * discrete-log tables for g^p in G and e(g,g)^p in GT,
+     * built on first use and shared by all decryptions. It
+     * does not depend on a BGN instance and can be built or
+     * loaded on its own.
      */
-    public class PrivateKey {
+    public static class PrivateKey {
         private BigInteger p;
+        private volatile BGNDiscreteLog dlogG, dlogGT;
         public PrivateKey(BigInteger p) {
             this.p = p;
         }
         public BigInteger getP() {
             return p;
         }
+        /**
+         * @Title: getDiscreteLogG
+         * @Description: This function returns the discrete-log
+         * solver to the base g^p over [-T, T].
+         * @param pubkey
+         * The public key of BGN PKE.
+         * @return BGNDiscreteLog The solver for G.
+         */
+        public BGNDiscreteLog getDiscreteLogG(PublicKey pubkey) {
+            BGNDiscreteLog dlog = dlogG;
+            if (dlog == null) {
+                synchronized (this) {
+                    dlog = dlogG;
+                    if (dlog == null) {
+                        dlogG = dlog = new BGNDiscreteLog(pubkey.getG()
+                                .pow(p).getImmutable(), pubkey.getRange());
+                    }
+                }
+            }
+            return dlog;
+        }
+        /**
+         * @Title: getDiscreteLogGT
+         * @Description: This function returns the discrete-log
+         * solver to the base e(g,g)^p over [-T, T].
+         * @param pubkey
+         * The public key of BGN PKE.
+         * @return BGNDiscreteLog The solver for GT.
+         */
+        public BGNDiscreteLog getDiscreteLogGT(PublicKey pubkey) {
+            BGNDiscreteLog dlog = dlogGT;
+            if (dlog == null) {
+                synchronized (this) {
+                    dlog = dlogGT;
+                    if (dlog == null) {
+                        Element g = pubkey.getG();
+                        dlogGT = dlog = new BGNDiscreteLog(pubkey.getPairing()
+                                .pairing(g, g).pow(p).getImmutable(),
+                                pubkey.getRange());
+                    }
+                }
+            }
+            return dlog;
+        }
     }
-    private static final int T = 100; // The max range of message m
+    private static final int T = 100; // The default range of message m
+    private static final int PAIRING_CHUNK = 16; // Pairs per product of pairings
+    private static final Metrics.Timer KEYGEN_TIMER = Metrics.timer("BGN.keyGeneration");
+    private static final Metrics.Timer ENCRYPT_TIMER = Metrics.timer("BGN.encrypt");
+    private static final Metrics.Timer DECRYPT_TIMER = Metrics.timer("BGN.decrypt");
+    private static final Metrics.Timer DECRYPT_MUL2_TIMER = Metrics.timer("BGN.decrypt_mul2");
+    private static final Metrics.Timer ENCRYPT_BATCH_TIMER = Metrics.timer("BGN.encryptBatch");
+    private static final Metrics.Timer DECRYPT_BATCH_TIMER = Metrics.timer("BGN.decryptBatch");
+    private static final Metrics.Timer ADD_TIMER = Metrics.timer("BGN.add");
+    private static final Metrics.Timer MUL1_TIMER = Metrics.timer("BGN.mul1");
+    private static final Metrics.Timer MUL2_TIMER = Metrics.timer("BGN.mul2");
+    private static final Metrics.Timer SELF_BLIND_TIMER = Metrics.timer("BGN.selfBlind");
+    private static final Metrics.Timer INNER_PRODUCT_TIMER = Metrics.timer("BGN.innerProduct");
+    private static final Metrics.Counter PLAINTEXT_REJECTED = Metrics.counter("BGN.encrypt.rejected");
     private PublicKey pubkey;
     private PrivateKey prikey;
 /**
  * @Title: keyGeneration
  * @Description: This function is responsible for
- * generating the public keys and the private keys.
+ * generating the public keys and the private keys,
+ * with messages in [-T, T], T=100.
  * @param k
  * the security parameter, which decides the
  * length of two large prime (p and q).
  * @return void
  */
 public void keyGeneration(int k) {
-    TypeA1CurveGenerator pg = new
-            TypeA1CurveGenerator(2, k);
-    PairingParameters pp = pg.generate();
-    Pairing pairing = PairingFactory.getPairing(pp);
+    keyGeneration(k, T);
+}
+/**
+ * @Title: keyGeneration
+ * @Description: This function is responsible for
+ * generating the public keys and the private keys,
+ * with messages in [-range, range].
+ * @param k
+ * the security parameter, which decides the
+ * length of two large prime (p and q).
+ * @param range
+ * The message range, up to about 2^32.
+ * @return void
+ */
+public void keyGeneration(int k, long range) {
+    long start = KEYGEN_TIMER.start();
+    keyGeneration(generateParameters(k), range);
+    KEYGEN_TIMER.stop(start);
+}
+/**
+ * @Title: keyGeneration
+ * @Description: This function is responsible for
+ * generating the public keys and the private keys,
+ * taking the curve from a parameter cache when it holds one
+ * for k and generating it otherwise.
+ * @param k
+ * the security parameter, which decides the
+ * length of two large prime (p and q).
+ * @param range
+ * The message range, up to about 2^32.
+ * @param cache
+ * The parameter cache; the curve taken is removed from it.
+ * @return void
+ * @throws IOException
+ * If the cache cannot be read, there is an exception.
+ */
+public void keyGeneration(int k, long range, BGNParameterCache cache)
+        throws IOException {
+    long start = KEYGEN_TIMER.start();
+    PairingParameters pp = cache.take(k);
+    keyGeneration(pp != null ? pp : generateParameters(k), range);
+    KEYGEN_TIMER.stop(start);
+}
+/**
+ * @Title: keyGeneration
+ * @Description: This function is responsible for
+ * generating the public keys and the private keys on a
+ * given curve: only g and h are fresh. The private key is the
+ * factor n1 of the curve order, so key pairs on the same
+ * curve share it.
+ * @param pp
+ * The Type A1 pairing parameters with two primes.
+ * @param range
+ * The message range, up to about 2^32.
+ * @return void
+ */
+public void keyGeneration(PairingParameters pp, long range) {
+    Pairing pairing = pairing(pp);
     BigInteger n = pp.getBigInteger("n");
     BigInteger q = pp.getBigInteger("n0");
     BigInteger p = pp.getBigInteger("n1");
     Field<Element> Field_G = pairing.getG1();
     Field<Element> Field_GT = pairing.getGT();
-    Element g = Field_G.newRandomElement().getImmutable();
+    Element g = Field_G.newRandomElement().getImmutable(); // from Randomness, through pairing(pp)
     Element h = g.pow(q).getImmutable();
     pubkey = new PublicKey(n, Field_G, Field_GT,
-            pairing, g, h);
+            pairing, g, h, range, pp);
     prikey = new PrivateKey(p);
+}
+/**
+ * @Title: generateParameters
+ * @Description: This function searches for a Type A1 curve
+ * whose order is the product of two k-bit primes.
+ * @param k
+ * the security parameter.
+ * @return PairingParameters The pairing parameters.
+ */
+static PairingParameters generateParameters(int k) {
+    TypeA1CurveGenerator pg = new
+            TypeA1CurveGenerator(Randomness.get(), 2, k);
+    return pg.generate();
+}
+/**
+ * @Title: pairing
+ * @Description: This function builds the Type A1 pairing of a
+ * curve on the shared DRBG, so g and every other element JPBC
+ * draws for the key come from Randomness and a seeded run is
+ * reproducible. PairingFactory would give the pairing its own
+ * SecureRandom.
+ * @param pp
+ * The Type A1 pairing parameters.
+ * @return Pairing The pairing.
+ */
+static Pairing pairing(PairingParameters pp) {
+    return new TypeA1Pairing(Randomness.get(), pp);
 }
     /**
      * @Title: getPubkey
@@ -114,35 +355,120 @@ public void keyGeneration(int k) {
     public PrivateKey getPrikey() {
         return prikey;
     }
+    /**
+     * @Title: saveKeys
+     * @Description: This function writes the key pair to a key
+     * store file: the pairing parameters, g, h, the message
+     * range and p, plus the fixed-base and discrete-log tables
+     * that have been built, so loadKeys needs neither curve
+     * generation nor table building.
+     * @param path
+     * The key store file.
+     * @throws IOException
+     * If the key has no pairing parameters, or the file cannot
+     * be written, there is an exception.
+     */
+    public void saveKeys(Path path) throws IOException {
+        if (pubkey.getParams() == null) {
+            throw new IOException(
+                    "BGN.saveKeys(Path path): public key has no pairing parameters");
+        }
+        KeyStore store = new KeyStore("BGN");
+        store.putString("params", pubkey.getParams().toString(" "));
+        store.put("g", pubkey.getG().toBytes());
+        store.put("h", pubkey.getH().toBytes());
+        store.putLong("range", pubkey.getRange());
+        if (pubkey.gTable != null) {
+            store.put("gTable", pubkey.gTable.toBytes());
+        }
+        if (pubkey.hTable != null) {
+            store.put("hTable", pubkey.hTable.toBytes());
+        }
+        if (prikey != null) {
+            store.putBigInteger("p", prikey.getP());
+            if (prikey.dlogG != null) {
+                store.put("dlogG", prikey.dlogG.toBytes());
+            }
+            if (prikey.dlogGT != null) {
+                store.put("dlogGT", prikey.dlogGT.toBytes());
+            }
+        }
+        store.write(path);
+    }
+    /**
+     * @Title: loadKeys
+     * @Description: This function reads a key pair written by
+     * saveKeys, replacing keyGeneration at start-up. The
+     * private key is null if the store holds only a public key.
+     * @param path
+     * The key store file.
+     * @throws IOException
+     * If the file is not a BGN key store, there is an
+     * exception.
+     */
+    @SuppressWarnings("unchecked")
+    public void loadKeys(Path path) throws IOException {
+        KeyStore store = KeyStore.read(path, "BGN");
+        PairingParameters pp = new PropertiesParameters().load(
+                new ByteArrayInputStream(store.get("params")));
+        Pairing pairing = pairing(pp);
+        Field<Element> Field_G = pairing.getG1();
+        Field<Element> Field_GT = pairing.getGT();
+        Element g = Field_G.newElementFromBytes(store.get("g")).getImmutable();
+        Element h = Field_G.newElementFromBytes(store.get("h")).getImmutable();
+        pubkey = new PublicKey(pp.getBigInteger("n"), Field_G, Field_GT,
+                pairing, g, h, store.getLong("range"), pp);
+        if (store.has("gTable")) {
+            pubkey.gTable = Field_G.getElementPowPreProcessingFromBytes(
+                    store.get("gTable"));
+        }
+        if (store.has("hTable")) {
+            pubkey.hTable = Field_G.getElementPowPreProcessingFromBytes(
+                    store.get("hTable"));
+        }
+        prikey = null;
+        if (store.has("p")) {
+            BigInteger p = store.getBigInteger("p");
+            prikey = new PrivateKey(p);
+            if (store.has("dlogG")) {
+                prikey.dlogG = BGNDiscreteLog.fromBytes(
+                        g.pow(p).getImmutable(), store.get("dlogG"));
+            }
+            if (store.has("dlogGT")) {
+                prikey.dlogGT = BGNDiscreteLog.fromBytes(
+                        pairing.pairing(g, g).pow(p).getImmutable(),
+                        store.get("dlogGT"));
+            }
+        }
+    }
 /**
  * @Title: encrypt
  * @Description: This function is to encrypt the message
- * m, m in [0,1,2,...,T],
- * T=100 with public key.
+ * m, m in [-T,...,T], T = pubkey.getRange(),
+ * with public key.
  * @param m
  * The message
  * @param pubkey
  * The public key of BGN PKE.
  * @return Element The ciphertext.
  * @throws Exception
- * If the plaintext is not in [0,1,2,...,n],
+ * If the plaintext is not in [-T,...,T],
  * there is an exception.
  */
-public static Element encrypt(int m, PublicKey pubkey)
+public static Element encrypt(long m, PublicKey pubkey)
         throws Exception {
-    if (m > T) {
+    long start = ENCRYPT_TIMER.start();
+    long range = pubkey.getRange();
+    if (m > range || m < -range) {
+        PLAINTEXT_REJECTED.increment();
         throw new Exception(
-                "BGN.encrypt(int m, PublicKey pubkey): "
-                        + "plaintext m is not in [0,1,2,...,"
-                        + T + "]");
+                "BGN.encrypt(long m, PublicKey pubkey): "
+                        + "plaintext m is not in [-" + range + ",...,"
+                        + range + "]");
     }
-    Pairing pairing = pubkey.getPairing();
-    Element g = pubkey.getG();
-    Element h = pubkey.getH();
-    BigInteger r = pairing.getZr().newRandomElement()
-            .toBigInteger();
-    return g.pow(BigInteger.valueOf(m)).mul(h.pow(r))
-            .getImmutable();
+    BigInteger r = Randomness.randomZN(pubkey.getN());
+    return ENCRYPT_TIMER.stop(start, pubkey.powG(BigInteger.valueOf(m))
+            .mul(pubkey.powH(r)).getImmutable());
 }
     /**
      *
@@ -155,43 +481,203 @@ public static Element encrypt(int m, PublicKey pubkey)
      * The public key of BGN PKE.
      * @param prikey
      * The private key of BGN PKE.
-     * @return int The plaintext.
+     * @return long The plaintext.
      * @throws Exception
-     * If the plaintext is not in [0,1,2,...,n],
+     * If the plaintext is not in [-T,...,T],
      * there is an exception.
      */
-    public static int decrypt(Element c, PublicKey pubkey,
-                              PrivateKey prikey) throws Exception {
+    public static long decrypt(Element c, PublicKey pubkey,
+                               PrivateKey prikey) throws Exception {
+        long start = DECRYPT_TIMER.start();
         BigInteger p = prikey.getP();
-        Element g = pubkey.getG();
         Element cp = c.pow(p).getImmutable();
-        Element gp = g.pow(p).getImmutable();
-        for (int i = 0; i <= T; i++) {
-            if (gp.pow(BigInteger.valueOf(i)).isEqual(cp)) {
-                return i;
-            }
+        try {
+            return DECRYPT_TIMER.stop(start,
+                    prikey.getDiscreteLogG(pubkey).log(cp));
+        } catch (Exception e) {
+            throw new Exception(
+                    "BGN.decrypt(Element c, PublicKey pubkey, PrivateKey prikey): "
+                    + "plaintext m is not in [-" + pubkey.getRange() + ",...,"
+                    + pubkey.getRange() + "]", e);
         }
-        throw new Exception(
-                "BGN.decrypt(Element c, PublicKey pubkey, PrivateKey prikey): "
-                + "plaintext m is not in [0,1,2,...,"
-                + T + "]");
     }
-    public static int decrypt_mul2(Element c, PublicKey pubkey,
-                                   PrivateKey prikey) throws Exception {
+    /**
+     * @Title: encrypt
+     * @Description: This function is to encrypt a batch of
+     * messages in parallel on the common fork/join pool. The
+     * ciphertexts keep the order of the messages.
+     * @param ms
+     * The messages.
+     * @param pubkey
+     * The public key of BGN PKE.
+     * @return Element[] The ciphertexts.
+     * @throws Exception
+     * If any plaintext is not in [-T,...,T], there is an
+     * exception.
+     */
+    public static Element[] encrypt(long[] ms, PublicKey pubkey)
+            throws Exception {
+        return encrypt(ms, pubkey, 0);
+    }
+    /**
+     * @Title: encrypt
+     * @Description: This function is to encrypt a batch of
+     * messages in parallel with at most parallelism threads.
+     * @param ms
+     * The messages.
+     * @param pubkey
+     * The public key of BGN PKE.
+     * @param parallelism
+     * The maximum number of worker threads, or 0 to use the
+     * common fork/join pool.
+     * @return Element[] The ciphertexts.
+     * @throws Exception
+     * If any plaintext is not in [-T,...,T], there is an
+     * exception.
+     */
+    public static Element[] encrypt(long[] ms, PublicKey pubkey,
+                                    int parallelism) throws Exception {
+        long start = ENCRYPT_BATCH_TIMER.start();
+        Element[] cs = new Element[ms.length];
+        Batch.run(ms.length, parallelism,
+                i -> cs[i] = encrypt(ms[i], pubkey));
+        return ENCRYPT_BATCH_TIMER.stop(start, cs);
+    }
+    public static Element[] encrypt(List<Long> ms, PublicKey pubkey,
+                                    int parallelism) throws Exception {
+        return encrypt(ms.stream().mapToLong(Long::longValue).toArray(),
+                pubkey, parallelism);
+    }
+    /**
+     * @Title: decrypt
+     * @Description: This function is to decrypt a batch of
+     * ciphertexts in parallel on the common fork/join pool. The
+     * plaintexts keep the order of the ciphertexts.
+     * @param cs
+     * The ciphertexts.
+     * @param pubkey
+     * The public key of BGN PKE.
+     * @param prikey
+     * The private key of BGN PKE.
+     * @return long[] The plaintexts.
+     * @throws Exception
+     * If any plaintext is not in [-T,...,T], there is an
+     * exception.
+     */
+    public static long[] decrypt(Element[] cs, PublicKey pubkey,
+                                 PrivateKey prikey) throws Exception {
+        return decrypt(cs, pubkey, prikey, 0);
+    }
+    /**
+     * @Title: decrypt
+     * @Description: This function is to decrypt a batch of
+     * ciphertexts in parallel with at most parallelism threads.
+     * @param cs
+     * The ciphertexts.
+     * @param pubkey
+     * The public key of BGN PKE.
+     * @param prikey
+     * The private key of BGN PKE.
+     * @param parallelism
+     * The maximum number of worker threads, or 0 to use the
+     * common fork/join pool.
+     * @return long[] The plaintexts.
+     * @throws Exception
+     * If any plaintext is not in [-T,...,T], there is an
+     * exception.
+     */
+    public static long[] decrypt(Element[] cs, PublicKey pubkey,
+                                 PrivateKey prikey, int parallelism) throws Exception {
+        long start = DECRYPT_BATCH_TIMER.start();
+        long[] ms = new long[cs.length];
+        Batch.run(cs.length, parallelism,
+                i -> ms[i] = decrypt(cs[i], pubkey, prikey));
+        return DECRYPT_BATCH_TIMER.stop(start, ms);
+    }
+    public static long[] decrypt(List<Element> cs, PublicKey pubkey,
+                                 PrivateKey prikey, int parallelism) throws Exception {
+        return decrypt(cs.toArray(new Element[0]), pubkey, prikey,
+                parallelism);
+    }
+    /**
+     *
+     * @Title: decrypt_mul2
+     * @Description: This function is to decrypt a ciphertext
+     * in GT, e.g. the result of mul2.
+     * @param c
+     * The ciphertext in GT.
+     * @param pubkey
+     * The public key of BGN PKE.
+     * @param prikey
+     * The private key of BGN PKE.
+     * @return long The plaintext.
+     * @throws Exception
+     * If the plaintext is not in [-T,...,T],
+     * there is an exception.
+     */
+    public static long decrypt_mul2(Element c, PublicKey pubkey,
+                                    PrivateKey prikey) throws Exception {
+        long start = DECRYPT_MUL2_TIMER.start();
         BigInteger p = prikey.getP();
-        Element g = pubkey.getG();
         Element cp = c.pow(p).getImmutable();
-        Element egg = pubkey.getPairing().pairing(g, g).pow(p)
-                .getImmutable();
-        for (int i = 0; i <= T; i++) {
-            if (egg.pow(BigInteger.valueOf(i)).isEqual(cp)) {
-                return i;
-            }
+        try {
+            return DECRYPT_MUL2_TIMER.stop(start,
+                    prikey.getDiscreteLogGT(pubkey).log(cp));
+        } catch (Exception e) {
+            throw new Exception(
+                    "BGN.decrypt_mul2(Element c, PublicKey pubkey, PrivateKey prikey): "
+                    + "plaintext m is not in [-" + pubkey.getRange() + ",...,"
+                    + pubkey.getRange() + "]", e);
         }
-        throw new Exception(
-                "BGN.decrypt(Element c, PublicKey pubkey, PrivateKey prikey): "
-                + "plaintext m is not in [0,1,2,...,"
-                + T + "]");
+    }
+    /**
+     * @Title: toBytes
+     * @Description: This function encodes a ciphertext for a
+     * ciphertext file. Points of G use the compressed encoding,
+     * elements of GT their full encoding.
+     * @param c
+     * The ciphertext.
+     * @return byte[] The encoded ciphertext.
+     */
+    public static byte[] toBytes(Element c) {
+        if (c instanceof Point) {
+            return ((Point<?>) c).toBytesCompressed();
+        }
+        return c.toBytes();
+    }
+    /**
+     * @Title: fromBytes
+     * @Description: This function decodes a ciphertext written
+     * by toBytes.
+     * @param bytes
+     * The encoded ciphertext.
+     * @param field
+     * The field of the ciphertext, G or GT.
+     * @return Element The ciphertext.
+     */
+    public static Element fromBytes(byte[] bytes, Field<Element> field) {
+        Element c = field.newElement();
+        if (c instanceof Point) {
+            ((Point<?>) c).setFromBytesCompressed(bytes);
+        } else {
+            c.setFromBytes(bytes);
+        }
+        return c.getImmutable();
+    }
+    /**
+     * @Title: ciphertextWidth
+     * @Description: This function returns the record width of
+     * the encoded ciphertexts of a field.
+     * @param field
+     * The field of the ciphertexts, G or GT.
+     * @return int The width in bytes.
+     */
+    public static int ciphertextWidth(Field<Element> field) {
+        Element c = field.newElement();
+        if (c instanceof Point) {
+            return ((Point<?>) c).getLengthInBytesCompressed();
+        }
+        return field.getLengthInBytes();
     }
     /**
      * @Title: add
@@ -206,7 +692,8 @@ public static Element encrypt(int m, PublicKey pubkey)
      * @return Element The return value is c1*c2.
      */
     public static Element add(Element c1, Element c2) {
-        return c1.mul(c2).getImmutable();
+        long start = ADD_TIMER.start();
+        return ADD_TIMER.stop(start, c1.mul(c2).getImmutable());
     }
 /**
  * @Title: mul1
@@ -222,7 +709,9 @@ public static Element encrypt(int m, PublicKey pubkey)
  * @return Element The return value is c^m.
  */
 public static Element mul1(Element c1, int m2) {
-    return c1.pow(BigInteger.valueOf(m2)).getImmutable();
+    long start = MUL1_TIMER.start();
+    return MUL1_TIMER.stop(start,
+            c1.pow(BigInteger.valueOf(m2)).getImmutable());
 }
     /**
      * @Title: mul2
@@ -237,8 +726,114 @@ public static Element mul1(Element c1, int m2) {
      */
     public static Element mul2(Element c1, Element c2,
                                PublicKey pubkey) {
+        long start = MUL2_TIMER.start();
         Pairing pairing = pubkey.getPairing();
-        return pairing.pairing(c1, c2).getImmutable();
+        return MUL2_TIMER.stop(start, pairing.pairing(c1, c2).getImmutable());
+    }
+    /**
+     * @Title: innerProduct
+     * @Description: The function supports the homomorphic inner
+     * product of two vectors of ciphertexts in G, the product of
+     * e(c1[i],c2[i]) in GT, which decrypt_mul2 decrypts to the
+     * sum of m1[i]*m2[i]. Each chunk of PAIRING_CHUNK pairs is
+     * one product of pairings, which shares a single final
+     * exponentiation, and the chunks run in parallel.
+     * @param c1
+     * The ciphertexts in G.
+     * @param c2
+     * The ciphertexts in G, as many as c1.
+     * @param pubkey
+     * The public key of BGN PKE.
+     * @param parallelism
+     * The maximum number of worker threads, or 0 to use the
+     * common fork/join pool.
+     * @return Element The ciphertext in GT.
+     */
+    public static Element innerProduct(Element[] c1, Element[] c2,
+                                       PublicKey pubkey, int parallelism) throws Exception {
+        requireSameLength(c1.length, c2.length);
+        long start = INNER_PRODUCT_TIMER.start();
+        Pairing pairing = pubkey.getPairing();
+        Element[] partial = new Element[chunks(c1.length)];
+        Batch.run(partial.length, parallelism, j -> {
+            int lo = j * PAIRING_CHUNK;
+            int hi = Math.min(c1.length, lo + PAIRING_CHUNK);
+            partial[j] = pairing.pairing(Arrays.copyOfRange(c1, lo, hi),
+                    Arrays.copyOfRange(c2, lo, hi));
+        });
+        return INNER_PRODUCT_TIMER.stop(start, product(partial, pubkey));
+    }
+    /**
+     * @Title: preprocess
+     * @Description: This function precomputes the pairings of
+     * a vector of ciphertexts which is reused in many inner
+     * products, e.g. an encrypted weight vector.
+     * @param cs
+     * The ciphertexts in G.
+     * @param pubkey
+     * The public key of BGN PKE.
+     * @param parallelism
+     * The maximum number of worker threads, or 0 to use the
+     * common fork/join pool.
+     * @return PairingPreProcessing[] One precomputation per
+     * ciphertext.
+     */
+    public static PairingPreProcessing[] preprocess(Element[] cs,
+                                                    PublicKey pubkey, int parallelism) throws Exception {
+        Pairing pairing = pubkey.getPairing();
+        PairingPreProcessing[] fixed = new PairingPreProcessing[cs.length];
+        Batch.run(cs.length, parallelism,
+                i -> fixed[i] = pairing.getPairingPreProcessingFromElement(cs[i]));
+        return fixed;
+    }
+    /**
+     * @Title: innerProduct
+     * @Description: The function supports the homomorphic inner
+     * product with a vector preprocessed by preprocess. Each
+     * pairing reuses its precomputed Miller loop lines instead
+     * of sharing a final exponentiation.
+     * @param fixed
+     * The preprocessed ciphertexts.
+     * @param cs
+     * The ciphertexts in G, as many as fixed.
+     * @param pubkey
+     * The public key of BGN PKE.
+     * @param parallelism
+     * The maximum number of worker threads, or 0 to use the
+     * common fork/join pool.
+     * @return Element The ciphertext in GT.
+     */
+    public static Element innerProduct(PairingPreProcessing[] fixed, Element[] cs,
+                                       PublicKey pubkey, int parallelism) throws Exception {
+        requireSameLength(fixed.length, cs.length);
+        long start = INNER_PRODUCT_TIMER.start();
+        Element[] partial = new Element[chunks(cs.length)];
+        Batch.run(partial.length, parallelism, j -> {
+            int lo = j * PAIRING_CHUNK;
+            int hi = Math.min(cs.length, lo + PAIRING_CHUNK);
+            Element chunk = pubkey.getField_GT().newOneElement();
+            for (int i = lo; i < hi; i++) {
+                chunk.mul(fixed[i].pairing(cs[i]));
+            }
+            partial[j] = chunk;
+        });
+        return INNER_PRODUCT_TIMER.stop(start, product(partial, pubkey));
+    }
+    private static int chunks(int pairs) {
+        return (pairs + PAIRING_CHUNK - 1) / PAIRING_CHUNK;
+    }
+    private static void requireSameLength(int length1, int length2) {
+        if (length1 != length2) {
+            throw new IllegalArgumentException(
+                    "BGN.innerProduct: vectors of different lengths");
+        }
+    }
+    private static Element product(Element[] partial, PublicKey pubkey) {
+        Element result = pubkey.getField_GT().newOneElement();
+        for (Element e : partial) {
+            result.mul(e);
+        }
+        return result.getImmutable();
     }
     /**
      * @Title: selfBlind
@@ -255,8 +850,9 @@ public static Element mul1(Element c1, int m2) {
      */
     public static Element selfBlind(Element c1, BigInteger r2,
                                     PublicKey pubkey) {
-        Element h = pubkey.getH();
-        return c1.mul(h.pow(r2)).getImmutable();
+        long start = SELF_BLIND_TIMER.start();
+        return SELF_BLIND_TIMER.stop(start,
+                c1.mul(pubkey.powH(r2)).getImmutable());
     }
     public static void main(String[] args) {
         BGN bgn = new BGN();
@@ -267,7 +863,7 @@ public static Element mul1(Element c1, int m2) {
 // Encryption and Decryption
         int m = 5;
         Element c = null;
-        int decrypted_m = 0;
+        long decrypted_m = 0;
         try {
             c = BGN.encrypt(m, pubkey);
             decrypted_m = BGN.decrypt(c, pubkey, prikey);
@@ -278,6 +874,15 @@ public static Element mul1(Element c1, int m2) {
             System.out.println("Encryption and Decryption "
                     + "test successfully.");
         }
+// Negative Messages
+        try {
+            if (BGN.decrypt(BGN.encrypt(-m, pubkey), pubkey, prikey) == -m) {
+                System.out.println("Negative message encryption and decryption "
+                        + "test successfully.");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
 // Homomorphic Properties
 // Addition
         int m1 = 5;
@@ -286,7 +891,7 @@ public static Element mul1(Element c1, int m2) {
             Element c1 = BGN.encrypt(m1, pubkey);
             Element c2 = BGN.encrypt(m2, pubkey);
             Element c1mulc2 = BGN.add(c1, c2);
-            int decrypted_c1mulc2 = BGN.decrypt(c1mulc2,
+            long decrypted_c1mulc2 = BGN.decrypt(c1mulc2,
                     pubkey, prikey);
             if (decrypted_c1mulc2 == (m1 + m2)) {
                 System.out.println("Homomorphic addition "
@@ -301,7 +906,7 @@ public static Element mul1(Element c1, int m2) {
         try {
             Element c1 = BGN.encrypt(m1, pubkey);
             Element c1expm2 = BGN.mul1(c1, m2);
-            int decrypted_c1expm2 = BGN.decrypt(c1expm2,
+            long decrypted_c1expm2 = BGN.decrypt(c1expm2,
                     pubkey, prikey);
             if (decrypted_c1expm2 == (m1 * m2)) {
                 System.out.println("Homomorphic multiplication-1 "
@@ -319,7 +924,7 @@ public static Element mul1(Element c1, int m2) {
             Element c2 = BGN.encrypt(m2, pubkey);
             Element c1pairingc2 = pubkey.getPairing()
                     .pairing(c1, c2).getImmutable();
-            int decrypted_c1pairingc2 =
+            long decrypted_c1pairingc2 =
                     BGN.decrypt_mul2(c1pairingc2, pubkey, prikey);
             if (decrypted_c1pairingc2 == (m1 * m2)) {
                 System.out.println("Homomorphic multiplication-2 "
@@ -331,12 +936,11 @@ public static Element mul1(Element c1, int m2) {
 // self-Blinding
         m1 = 5;
         try {
-            BigInteger r2 = pubkey.getPairing().getZr()
-                    .newRandomElement().toBigInteger();
+            BigInteger r2 = Randomness.randomZN(pubkey.getN());
             Element c1 = BGN.encrypt(m1, pubkey);
             Element c1_selfblind = BGN.selfBlind(c1,
                     r2, pubkey);
-            int decrypted_c1_selfblind =
+            long decrypted_c1_selfblind =
                     BGN.decrypt(c1_selfblind, pubkey, prikey);
             if (decrypted_c1_selfblind == m1) {
                 System.out.println("Homomorphic self-blinding "
@@ -345,5 +949,139 @@ public static Element mul1(Element c1, int m2) {
         } catch (Exception e) {
             e.printStackTrace();
         }
+// Fixed-Base Tables
+        try {
+            int rounds = 8;
+            boolean same = true;
+            for (int i = 0; i < rounds; i++) {
+                BigInteger r = Randomness.randomZN(pubkey.getN());
+                BigInteger e = BigInteger.valueOf(i - rounds / 2);
+                same &= pubkey.powG(e).mul(pubkey.powH(r)).isEqual(
+                        pubkey.getG().pow(e).mul(pubkey.getH().pow(r)));
+            }
+            if (same) {
+                System.out.println("Fixed-base table tests successfully.");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+// Ciphertext File
+        try {
+            java.nio.file.Path path = java.nio.file.Files.createTempFile(
+                    "bgn", ".hect");
+            Element c1 = BGN.encrypt(m, pubkey);
+            try (CiphertextFile.Writer writer = new CiphertextFile.Writer(path,
+                    BGN.ciphertextWidth(pubkey.getField_G()),
+                    pubkey.getFingerprint())) {
+                writer.write(BGN.toBytes(c1));
+            }
+            Element read_c1;
+            try (CiphertextFile.Reader reader = new CiphertextFile.Reader(path,
+                    pubkey.getFingerprint())) {
+                read_c1 = BGN.fromBytes(reader.get(0), pubkey.getField_G());
+            }
+            java.nio.file.Files.delete(path);
+            if (BGN.decrypt(read_c1, pubkey, prikey) == m) {
+                System.out.println("Ciphertext file tests successfully.");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+// Key Store
+        try {
+            java.nio.file.Path path = java.nio.file.Files.createTempFile(
+                    "bgn", ".keys");
+            bgn.saveKeys(path);
+            BGN loaded = new BGN();
+            loaded.loadKeys(path);
+            java.nio.file.Files.delete(path);
+            if (BGN.decrypt(c, loaded.getPubkey(), loaded.getPrikey()) == m) {
+                System.out.println("Key store tests successfully.");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+// Seeded Randomness
+        try {
+            BGN first = new BGN();
+            BGN second = new BGN();
+            Randomness.useSeed(2024);
+            first.keyGeneration(pubkey.getParams(), T);
+            Element c1 = BGN.encrypt(m, first.getPubkey());
+            Randomness.useSeed(2024);
+            second.keyGeneration(pubkey.getParams(), T);
+            Element c2 = BGN.encrypt(m, second.getPubkey());
+            Randomness.useDrbg();
+            if (first.getPubkey().getG().isEqual(second.getPubkey().getG())
+                    && c1.isEqual(c2)) {
+                System.out.println("Seeded randomness tests successfully.");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+// Batch Encryption and Decryption
+        try {
+            long[] ms = new long[32];
+            for (int i = 0; i < ms.length; i++) {
+                ms[i] = i - ms.length / 2;
+            }
+            long[] decrypted_ms = BGN.decrypt(BGN.encrypt(ms, pubkey),
+                    pubkey, prikey, 2);
+            if (java.util.Arrays.equals(ms, decrypted_ms)) {
+                System.out.println("Batch encryption and decryption "
+                        + "tests successfully.");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+// Parameter Cache
+        try {
+            java.nio.file.Path dir = java.nio.file.Files.createTempDirectory("bgn-params");
+            BGNParameterCache cache = new BGNParameterCache(dir);
+            cache.generate(256, 2, 0);
+            BGN cached = new BGN();
+            cached.keyGeneration(256, T, cache);
+            BGN.PublicKey cachedPub = cached.getPubkey();
+            BGN.PrivateKey cachedPri = cached.getPrikey();
+            boolean consumed = cache.size(256) == 1;
+            BGN other = new BGN();
+            other.keyGeneration(256, T, cache);
+            boolean distinct = !other.getPrikey().getP().equals(cachedPri.getP())
+                    && cache.take(256) == null;
+            java.nio.file.Files.delete(dir);
+            if (BGN.decrypt(BGN.encrypt(m, cachedPub), cachedPub, cachedPri) == m
+                    && consumed && distinct) {
+                System.out.println("Parameter cache tests successfully.");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+// Inner Product
+        try {
+            long[] xs = new long[40], ys = new long[40];
+            long expected = 0;
+            for (int i = 0; i < xs.length; i++) {
+                xs[i] = i % 5 - 2;
+                ys[i] = i % 3;
+                expected += xs[i] * ys[i];
+            }
+            Element[] cxs = BGN.encrypt(xs, pubkey);
+            Element[] cys = BGN.encrypt(ys, pubkey);
+            Element naive = pubkey.getField_GT().newOneElement();
+            for (int i = 0; i < xs.length; i++) {
+                naive.mul(BGN.mul2(cxs[i], cys[i], pubkey));
+            }
+            Element product = BGN.innerProduct(cxs, cys, pubkey, 0);
+            PairingPreProcessing[] fixed = BGN.preprocess(cxs, pubkey, 0);
+            Element preprocessed = BGN.innerProduct(fixed, cys, pubkey, 0);
+            if (BGN.decrypt_mul2(product, pubkey, prikey) == expected
+                    && BGN.decrypt_mul2(preprocessed, pubkey, prikey) == expected
+                    && BGN.decrypt_mul2(naive.getImmutable(), pubkey, prikey) == expected) {
+                System.out.println("Inner product tests successfully, " + xs.length
+                        + " pairs.");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,92 @@
+package BGN;
+import HomomorphicService.HomomorphicService;
+import Randomness.Randomness;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+/*
+ * This source code uses the JPBC (Java Pairing-Based
+ * Cryptography) library,
+ * which can be downloaded from
+ * http://gas.dia.unisa.it/projects/jpbc/
+ */
+import it.unisa.dia.gas.jpbc.*;
+/**
+ * @ClassName: BGNAsync
+ * @Description: This is the asynchronous facade of BGN PKE
+ * for one key pair. Every call returns at once; the work runs
+ * on the CPU threads of a HomomorphicService, and checked
+ * exceptions of BGN complete the future exceptionally.
+ */
+public class BGNAsync {
+    private final HomomorphicService service;
+    private final BGN.PublicKey pubkey;
+    private final BGN.PrivateKey prikey;
+    /**
+     * @Title: BGNAsync
+     * @Description: This function binds a key pair to a
+     * service.
+     * @param service
+     * The service running the requests.
+     * @param pubkey
+     * The public key of BGN PKE.
+     * @param prikey
+     * The private key of BGN PKE, or null for a facade that
+     * only encrypts and evaluates.
+     */
+    public BGNAsync(HomomorphicService service, BGN.PublicKey pubkey,
+                    BGN.PrivateKey prikey) {
+        this.service = service;
+        this.pubkey = pubkey;
+        this.prikey = prikey;
+    }
+    public CompletableFuture<Element> encrypt(long m) {
+        return service.submit("BGN.encrypt", () -> BGN.encrypt(m, pubkey));
+    }
+    public CompletableFuture<Long> decrypt(Element c) {
+        return service.submit("BGN.decrypt", () -> BGN.decrypt(c, pubkey, prikey));
+    }
+    public CompletableFuture<Long> decrypt_mul2(Element c) {
+        return service.submit("BGN.decrypt_mul2",
+                () -> BGN.decrypt_mul2(c, pubkey, prikey));
+    }
+    public CompletableFuture<Element> add(Element c1, Element c2) {
+        return service.submit("BGN.add", () -> BGN.add(c1, c2));
+    }
+    public CompletableFuture<Element> mul1(Element c, int m) {
+        return service.submit("BGN.mul1", () -> BGN.mul1(c, m));
+    }
+    public CompletableFuture<Element> mul2(Element c1, Element c2) {
+        return service.submit("BGN.mul2", () -> BGN.mul2(c1, c2, pubkey));
+    }
+    public CompletableFuture<Element> innerProduct(Element[] c1, Element[] c2) {
+        return service.submit("BGN.innerProduct",
+                () -> BGN.innerProduct(c1, c2, pubkey, 1));
+    }
+    public CompletableFuture<Element> selfBlind(Element c) {
+        return service.submit("BGN.selfBlind", () -> BGN.selfBlind(c,
+                Randomness.randomZN(pubkey.getN()), pubkey));
+    }
+    /**
+     * @Title: encrypt
+     * @Description: This function encrypts a batch, one
+     * request per message, admitted or rejected as a whole.
+     */
+    public CompletableFuture<Element[]> encrypt(long[] ms) {
+        List<Callable<Element>> tasks = new ArrayList<Callable<Element>>(ms.length);
+        for (long m : ms) {
+            tasks.add(() -> BGN.encrypt(m, pubkey));
+        }
+        return service.submitAll("BGN.encrypt", tasks)
+                .thenApply(cs -> cs.toArray(new Element[0]));
+    }
+    public CompletableFuture<long[]> decrypt(Element[] cs) {
+        List<Callable<Long>> tasks = new ArrayList<Callable<Long>>(cs.length);
+        for (Element c : cs) {
+            tasks.add(() -> BGN.decrypt(c, pubkey, prikey));
+        }
+        return service.submitAll("BGN.decrypt", tasks)
+                .thenApply(ms -> ms.stream().mapToLong(Long::longValue).toArray());
+    }
+}
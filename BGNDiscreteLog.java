@@ -0,0 +1,181 @@
+package BGN;
+import Metrics.Metrics;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+/*
+ * This source code uses the JPBC (Java Pairing-Based
+ * Cryptography) library,
+ * which can be downloaded from
+ * http://gas.dia.unisa.it/projects/jpbc/
+ */
+import it.unisa.dia.gas.jpbc.*;
+/**
+ * @ClassName: BGNDiscreteLog
+ * @Description: This is a baby-step giant-step solver for
+ * discrete logarithms in [-range, range] to a fixed base. The
+ * baby-step table, keyed on element bytes, is built once and
+ * is read-only afterwards, so one solver can be shared by all
+ * decrypting threads.
+ */
+public class BGNDiscreteLog {
+    private static final Metrics.Counter HIT = Metrics.counter("BGNDiscreteLog.hit");
+    private static final Metrics.Counter MISS = Metrics.counter("BGNDiscreteLog.miss");
+    private static final long MAX_RANGE = 1L << 61; // so 2*range plus a giant step fits in a long
+    private static final long MAX_CAPACITY = 1 << 30; // largest HashMap table
+    private final long range;
+    private final int babySteps;
+    private final long giantSteps;
+    private final Element shift; // base^range
+    private final Element giant; // base^{-babySteps}
+    private final HashMap<ByteBuffer, Integer> table;
+    /**
+     * @Title: BGNDiscreteLog
+     * @Description: This function builds the solver with about
+     * sqrt(2*range+1) baby steps.
+     * @param base
+     * The base, g^p in G or e(g,g)^p in GT.
+     * @param range
+     * The largest absolute value of a logarithm.
+     */
+    public BGNDiscreteLog(Element base, long range) {
+        this(base, range, (int) Math.min(Integer.MAX_VALUE - 8,
+                (long) Math.ceil(Math.sqrt(2.0 * range + 1))));
+    }
+    /**
+     * @Title: BGNDiscreteLog
+     * @Description: This function builds the solver with a
+     * given number of baby steps. More baby steps use more
+     * memory and make each logarithm cheaper.
+     * @param base
+     * The base, g^p in G or e(g,g)^p in GT.
+     * @param range
+     * The largest absolute value of a logarithm.
+     * @param babySteps
+     * The number of entries in the baby-step table.
+     */
+    public BGNDiscreteLog(Element base, long range, int babySteps) {
+        this(base, range, babySteps, null);
+    }
+    /**
+     * @Title: fromBytes
+     * @Description: This function rebuilds a solver written by
+     * toBytes, reading the baby steps instead of computing them.
+     * @param base
+     * The base the solver was built for.
+     * @param bytes
+     * The output of toBytes.
+     * @return BGNDiscreteLog The solver.
+     * @throws IOException
+     * If the bytes are not a stored solver, there is an
+     * exception.
+     */
+    public static BGNDiscreteLog fromBytes(Element base, byte[] bytes)
+            throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        long range = in.readLong();
+        int babySteps = in.readInt();
+        return new BGNDiscreteLog(base, range, babySteps, in);
+    }
+    private BGNDiscreteLog(Element base, long range, int babySteps,
+                           DataInputStream in) {
+        if (range < 0 || range > MAX_RANGE || babySteps <= 0) {
+            throw new IllegalArgumentException(
+                    "BGNDiscreteLog: require 0 <= range <= 2^61 and babySteps > 0");
+        }
+        this.range = range;
+        this.babySteps = babySteps;
+// ceil((2*range+1)/babySteps), computed without forming 2*range+babySteps
+        this.giantSteps = 2 * range / babySteps + 1;
+        this.table = new HashMap<ByteBuffer, Integer>(
+                (int) Math.min(MAX_CAPACITY, babySteps * 4L / 3 + 1));
+        if (in != null) {
+            try {
+                for (int j = 0; j < babySteps; j++) {
+                    byte[] key = new byte[in.readInt()];
+                    in.readFully(key);
+                    table.putIfAbsent(ByteBuffer.wrap(key), j);
+                }
+            } catch (IOException e) {
+                throw new IllegalArgumentException(
+                        "BGNDiscreteLog: truncated baby-step table", e);
+            }
+        } else {
+            Element e = base.getField().newOneElement();
+            for (int j = 0; j < babySteps; j++) {
+                table.putIfAbsent(ByteBuffer.wrap(e.toBytes()), j);
+                e.mul(base);
+            }
+        }
+        this.shift = base.pow(BigInteger.valueOf(range)).getImmutable();
+        this.giant = base.pow(BigInteger.valueOf(babySteps)).invert()
+                .getImmutable();
+    }
+    public long getRange() {
+        return range;
+    }
+    /**
+     * @Title: toBytes
+     * @Description: This function encodes the range and the
+     * baby steps in order, for a key store.
+     * @return byte[] The encoded solver.
+     */
+    public byte[] toBytes() {
+        byte[][] steps = new byte[babySteps][];
+        for (Map.Entry<ByteBuffer, Integer> step : table.entrySet()) {
+            steps[step.getValue()] = step.getKey().array();
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeLong(range);
+            out.writeInt(babySteps);
+            for (byte[] step : steps) {
+// a step is missing only if it repeated an earlier one
+                step = step == null ? new byte[0] : step;
+                out.writeInt(step.length);
+                out.write(step);
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+    /**
+     * @Title: log
+     * @Description: This function returns x in [-range, range]
+     * with base^x = y. It shifts y by base^range and walks
+     * giant steps of base^{-babySteps} until it lands in the
+     * baby-step table.
+     * @param y
+     * The element.
+     * @return long The logarithm x.
+     * @throws Exception
+     * If the logarithm is not in [-range, range], there is an
+     * exception.
+     */
+    public long log(Element y) throws Exception {
+        Element z = y.getField().newElement().set(y).mul(shift);
+        for (long i = 0; i < giantSteps; i++) {
+            Integer j = table.get(ByteBuffer.wrap(z.toBytes()));
+            if (j != null) {
+                long x = i * babySteps + j;
+                if (x <= 2 * range) {
+                    HIT.increment();
+                    return x - range;
+                }
+            }
+            z.mul(giant);
+        }
+        MISS.increment();
+        throw new Exception("BGNDiscreteLog.log(Element y): logarithm is not in [-"
+                + range + "," + range + "]");
+    }
+}
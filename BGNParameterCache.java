@@ -0,0 +1,199 @@
+package BGN;
+import Batch.Batch;
+import KeyStore.KeyStore;
+import Metrics.Metrics;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+/*
+ * This source code uses the JPBC (Java Pairing-Based
+ * Cryptography) library,
+ * which can be downloaded from
+ * http://gas.dia.unisa.it/projects/jpbc/
+ */
+import it.unisa.dia.gas.jpbc.PairingParameters;
+import it.unisa.dia.gas.plaf.jpbc.pairing.parameters.PropertiesParameters;
+/**
+ * @ClassName: BGNParameterCache
+ * @Description: This is a directory of pre-generated Type A1
+ * pairing parameters, so that BGN key generation skips the
+ * search for a composite-order curve, by far its slowest step.
+ * Every curve is one key store file named a1-<k>-<id>.params
+ * holding the parameters as written by saveKeys.
+ *
+ * The parameters of a BGN curve contain the factors of n, and
+ * one of them is the private key. A cached curve is therefore
+ * secret key material: the files are created readable by the
+ * owner only, and take hands each curve out once, deleting its
+ * file, so two key pairs never share a factorization. get
+ * keeps the curve and is only for restarting the same key
+ * owner, whose new g and h still decrypt with the same p.
+ *
+ * Curves are pre-generated offline, in parallel, with generate
+ * or from the command line:
+ *
+ * java BGN.BGNParameterCache <directory> <k> <count> [threads]
+ */
+public class BGNParameterCache {
+    private static final String SCHEME = "BGN.params";
+    private static final Metrics.Counter CACHE_HIT = Metrics.counter("BGN.parameterCache.hit");
+    private static final Metrics.Counter CACHE_MISS = Metrics.counter("BGN.parameterCache.miss");
+    private final Path directory;
+    public BGNParameterCache(Path directory) {
+        this.directory = directory;
+    }
+    public Path getDirectory() {
+        return directory;
+    }
+    /**
+     * @Title: size
+     * @Description: This function returns the number of cached
+     * curves for a security parameter.
+     * @param k
+     * The security parameter of keyGeneration.
+     * @return int The number of cached curves.
+     * @throws IOException
+     * If the directory cannot be read, there is an exception.
+     */
+    public int size(int k) throws IOException {
+        return files(k).size();
+    }
+    /**
+     * @Title: put
+     * @Description: This function adds a curve to the cache.
+     * @param k
+     * The security parameter the curve was generated with.
+     * @param pp
+     * The pairing parameters.
+     * @throws IOException
+     * If the file cannot be written, there is an exception.
+     */
+    public void put(int k, PairingParameters pp) throws IOException {
+        Files.createDirectories(directory);
+        KeyStore store = new KeyStore(SCHEME);
+        store.putLong("k", k);
+        store.putString("params", pp.toString(" "));
+// written under a name take does not match, owner-only, then published by rename
+        Path tmp = Files.createTempFile(directory, ".a1-" + k + "-", ".tmp");
+        try {
+            store.write(tmp);
+            String name = tmp.getFileName().toString();
+            Files.move(tmp, tmp.resolveSibling(
+                    name.substring(1, name.length() - 4) + ".params"),
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+    /**
+     * @Title: take
+     * @Description: This function removes a curve from the
+     * cache and returns it. Several processes may take from the
+     * same directory; a file is claimed by an atomic rename, so
+     * each curve goes to one caller.
+     * @param k
+     * The security parameter.
+     * @return PairingParameters A curve, or null if none is
+     * cached for k.
+     * @throws IOException
+     * If a file cannot be read, there is an exception.
+     */
+    public PairingParameters take(int k) throws IOException {
+        for (Path path : files(k)) {
+            Path claimed = path.resolveSibling(path.getFileName() + ".claimed");
+            try {
+                Files.move(path, claimed, StandardCopyOption.ATOMIC_MOVE);
+            } catch (NoSuchFileException e) {
+                continue; // taken by another caller
+            }
+            try {
+                PairingParameters pp = read(claimed);
+                CACHE_HIT.increment();
+                return pp;
+            } finally {
+                Files.deleteIfExists(claimed);
+            }
+        }
+        CACHE_MISS.increment();
+        return null;
+    }
+    /**
+     * @Title: get
+     * @Description: This function returns a cached curve and
+     * keeps it. Key pairs built from it share the private key.
+     * @param k
+     * The security parameter.
+     * @return PairingParameters A curve, or null if none is
+     * cached for k.
+     * @throws IOException
+     * If a file cannot be read, there is an exception.
+     */
+    public PairingParameters get(int k) throws IOException {
+        List<Path> files = files(k);
+        if (files.isEmpty()) {
+            CACHE_MISS.increment();
+            return null;
+        }
+        CACHE_HIT.increment();
+        return read(files.get(0));
+    }
+    /**
+     * @Title: generate
+     * @Description: This function generates curves offline
+     * and adds them to the cache.
+     * @param k
+     * The security parameter.
+     * @param count
+     * The number of curves.
+     * @param parallelism
+     * The maximum number of worker threads, or 0 to use the
+     * common fork/join pool.
+     * @throws Exception
+     * If a curve cannot be written, there is an exception.
+     */
+    public void generate(int k, int count, int parallelism) throws Exception {
+        Batch.run(count, parallelism, i -> put(k, BGN.generateParameters(k)));
+    }
+    private List<Path> files(int k) throws IOException {
+        List<Path> files = new ArrayList<Path>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                "a1-" + k + "-*.params")) {
+            for (Path path : stream) {
+                files.add(path);
+            }
+        }
+        files.sort(null);
+        return files;
+    }
+    private static PairingParameters read(Path path) throws IOException {
+        KeyStore store = KeyStore.read(path, SCHEME);
+        return new PropertiesParameters().load(
+                new ByteArrayInputStream(store.get("params")));
+    }
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println(
+                    "usage: BGNParameterCache <directory> <k> <count> [threads]");
+            System.exit(2);
+        }
+        BGNParameterCache cache = new BGNParameterCache(Paths.get(args[0]));
+        int k = Integer.parseInt(args[1]);
+        int count = Integer.parseInt(args[2]);
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+        long start = System.nanoTime();
+        cache.generate(k, count, threads);
+        System.out.println(count + " curves for k = " + k + " in "
+                + (System.nanoTime() - start) / 1000000 + " ms, "
+                + cache.size(k) + " cached in " + cache.getDirectory());
+    }
+}
@@ -0,0 +1,110 @@
+package Batch;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+/**
+ * @ClassName: Batch
+ * @Description: This runs the batch operations of Paillier,
+ * Benaloh and BGN: one step per item, split with fork/join
+ * into leaves of THRESHOLD items.
+ *
+ * Parallelism 0 runs on the common fork/join pool, 1 runs on
+ * the caller's thread, and any other value on a pool of that
+ * many workers. Those pools are created once per parallelism
+ * and shared by every later batch; their workers are daemon
+ * threads and retire when idle, so nothing needs closing.
+ */
+public class Batch {
+    public static final int THRESHOLD = 16; // Items per fork/join leaf
+    private static final ConcurrentHashMap<Integer, ForkJoinPool> pools = new ConcurrentHashMap<Integer, ForkJoinPool>();
+    private Batch() {
+    }
+    /**
+     * @ClassName: Op
+     * @Description: One step of a batch operation, applied to
+     * the item at index i.
+     */
+    public interface Op<E extends Exception> {
+        void apply(int i) throws E;
+    }
+    /**
+     * @ClassName: Task
+     * @Description: A fork/join task which applies an Op to
+     * every index in [lo, hi), halving the range down to
+     * THRESHOLD items per leaf.
+     */
+    private static class Task extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int lo, hi;
+        private final transient Op<?> op;
+        Task(int lo, int hi, Op<?> op) {
+            this.lo = lo;
+            this.hi = hi;
+            this.op = op;
+        }
+        @Override
+        protected void compute() {
+            if (hi - lo <= THRESHOLD) {
+                for (int i = lo; i < hi; i++) {
+                    try {
+                        op.apply(i);
+                    } catch (RuntimeException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            } else {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Task(lo, mid, op), new Task(mid, hi, op));
+            }
+        }
+    }
+    /**
+     * @Title: run
+     * @Description: This function applies op to every index in
+     * [0, size) and rethrows the first exception op threw.
+     * @param size
+     * The number of items.
+     * @param parallelism
+     * The maximum number of worker threads, 1 for the caller's
+     * thread only, or 0 to use the common fork/join pool.
+     * @param op
+     * The operation applied to each index.
+     * @throws E
+     * If the operation fails on any item, there is an
+     * exception.
+     */
+    @SuppressWarnings("unchecked")
+    public static <E extends Exception> void run(int size, int parallelism,
+                                                 Op<E> op) throws E {
+        if (parallelism < 0) {
+            throw new IllegalArgumentException("Batch.run: require parallelism >= 0");
+        }
+        if (parallelism == 1 || size <= THRESHOLD) {
+            for (int i = 0; i < size; i++) {
+                op.apply(i);
+            }
+            return;
+        }
+        try {
+            pool(parallelism).invoke(new Task(0, size, op));
+        } catch (RuntimeException e) {
+            Throwable t = e;
+            while (t instanceof RuntimeException && t.getCause() != null) {
+                t = t.getCause();
+            }
+// op declares E, so a checked exception from it is an E
+            if (t instanceof Exception && !(t instanceof RuntimeException)) {
+                throw (E) t;
+            }
+            throw e;
+        }
+    }
+    private static ForkJoinPool pool(int parallelism) {
+        if (parallelism == 0) {
+            return ForkJoinPool.commonPool();
+        }
+        return pools.computeIfAbsent(parallelism, ForkJoinPool::new);
+    }
+}
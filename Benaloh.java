@@ -1,15 +1,32 @@
 package Benaloh;
 
 
+import Batch.Batch;
+import CiphertextFile.CiphertextFile;
+import KeyStore.KeyStore;
+import Metrics.Metrics;
+import Montgomery.Montgomery;
+import Randomness.Randomness;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.file.Path;
 import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 public class Benaloh {
 
 //    key generation
 
-    public class PublicKey {
+//    key classes are static, so keys can be built or loaded without a Benaloh instance
+    public static class PublicKey {
         private BigInteger n, y;
         public PublicKey(BigInteger n, BigInteger y) {
             this.n = n;
@@ -21,27 +38,282 @@ public class Benaloh {
         public BigInteger getY() {
             return y;
         }
+//        SHA-256 fingerprint of (n, y), tags ciphertext files written under this key
+        public byte[] getFingerprint() {
+            return CiphertextFile.fingerprint(n, y);
+        }
     }
 //private key
 
-    public class PrivateKey {
+    public static class PrivateKey {
         private BigInteger x, phi;
+        private BigInteger p, exponentP, xP;
+        private volatile DecryptionTable table;
         public PrivateKey(BigInteger phi, BigInteger x) {
             this.phi = phi;
             this.x = x;
         }
+//        keeps p, (p-1)/R and x_p = y^((p-1)/R) mod p: only p-1 is divisible by R,
+//        so the class of a ciphertext is already determined mod p
+        public PrivateKey(BigInteger phi, BigInteger x, BigInteger p, BigInteger exponentP, BigInteger xP) {
+            this(phi, x);
+            this.p = p;
+            this.exponentP = exponentP;
+            this.xP = xP;
+        }
+        public BigInteger getP() {
+            return p;
+        }
+        public BigInteger getExponentP() {
+            return exponentP;
+        }
+        public BigInteger getXP() {
+            return xP;
+        }
         public BigInteger getPhi() {
             return phi;
         }
         public BigInteger getX() {
             return x;
         }
+//        decryption table for x_p mod p (or x mod n without p), built on first use and
+//        shared by all decrypting threads
+        public DecryptionTable getTable(BigInteger n, BigInteger R) {
+            DecryptionTable t=table;
+            if(t==null){
+                synchronized (this){
+                    t=table;
+                    if(t==null){
+                        long start=TABLE_TIMER.start();
+                        table=t=p!=null ? new DecryptionTable(xP,p,R) : new DecryptionTable(x,n,R);
+                        TABLE_TIMER.stop(start);
+                    }
+                }
+            }
+            return t;
+        }
+//        the table if it has been built, else null
+        public DecryptionTable peekTable() {
+            return table;
+        }
+    }
+
+//    decryption table solving x^i = a mod n for i in [0, R), x of order R.
+//    R is split into coprime prime powers f^e (Pohlig-Hellman); each prime f gets a
+//    SubgroupLog, so decryption costs one exponentiation plus small lookups. Up to
+//    TABLE_MAX, R itself is solved by one full table. Every prime factor of R must be at most
+//    PRIME_MAX, so a SubgroupLog holds at most sqrt(PRIME_MAX) = TABLE_MAX baby steps.
+//    The table is read-only after construction.
+    public static class DecryptionTable {
+        static final long TABLE_MAX = 1 << 20;
+        static final long PRIME_MAX = 1L << 40;
+        private final BigInteger n, x;
+        private final long R;
+        private final long[] primes, powers;
+        private final int[] exponents;
+        private final SubgroupLog[] logs;
+//        per prime power f^e: R/f^e, and x^(-R/f^e) of order f^e
+        private final BigInteger[] cofactors, g0Inverses;
+
+        public DecryptionTable(BigInteger x, BigInteger n, BigInteger R) {
+            this(x, n, R, null);
+        }
+
+//        rebuilds a table written by toBytes without recomputing the baby steps
+        public static DecryptionTable fromBytes(BigInteger x, BigInteger n, BigInteger R, byte[] bytes)
+                throws IOException {
+            return new DecryptionTable(x, n, R, new DataInputStream(new ByteArrayInputStream(bytes)));
+        }
+
+        private DecryptionTable(BigInteger x, BigInteger n, BigInteger R, DataInputStream in) {
+            this.n = n;
+            this.x = x;
+            this.R = R.longValueExact();
+            Map<Long, Integer> factors = this.R <= TABLE_MAX
+                    ? java.util.Collections.singletonMap(this.R, 1) : factor(this.R);
+            int size = factors.size();
+            this.primes = new long[size];
+            this.exponents = new int[size];
+            this.powers = new long[size];
+            this.logs = new SubgroupLog[size];
+            this.cofactors = new BigInteger[size];
+            this.g0Inverses = new BigInteger[size];
+            int k = 0;
+            for (Map.Entry<Long, Integer> f : factors.entrySet()) {
+                if (f.getKey() > PRIME_MAX)
+                    throw new IllegalArgumentException("Benaloh.DecryptionTable: require every prime factor of R at most 2^40");
+                primes[k] = f.getKey();
+                exponents[k] = f.getValue();
+                powers[k] = BigInteger.valueOf(primes[k]).pow(exponents[k]).longValueExact();
+                cofactors[k] = BigInteger.valueOf(this.R / powers[k]);
+                g0Inverses[k] = x.modPow(cofactors[k], n).modInverse(n);
+//                gamma = x^(R/f) has order f
+                BigInteger gamma = x.modPow(BigInteger.valueOf(this.R / primes[k]), n);
+                logs[k] = new SubgroupLog(gamma, n, primes[k], in);
+                k++;
+            }
+        }
+
+//        the baby steps of every subgroup, in order, for a key store
+        public byte[] toBytes() {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            try {
+                for (SubgroupLog log : logs) log.writeTo(out);
+                out.flush();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return bytes.toByteArray();
+        }
+
+//        returns i in [0, R) with x^i = a mod n, or -1 if there is none
+        public long lookup(BigInteger a) {
+            BigInteger i = BigInteger.ZERO, modulus = BigInteger.ONE;
+            for (int k = 0; k < primes.length; k++) {
+                long z = lookupPrimePower(a, k);
+                if (z < 0) return -1;
+//                CRT: i = z mod f^e
+                BigInteger fe = BigInteger.valueOf(powers[k]);
+                BigInteger t = BigInteger.valueOf(z).subtract(i)
+                        .multiply(modulus.modInverse(fe)).mod(fe);
+                i = i.add(modulus.multiply(t));
+                modulus = modulus.multiply(fe);
+            }
+            return i.longValue();
+        }
+
+//        solves the log of a in the subgroup of order f^e, one base-f digit at a time
+        private long lookupPrimePower(BigInteger a, int k) {
+            long f = primes[k], fe = powers[k];
+            BigInteger h = a.modPow(cofactors[k], n);
+            BigInteger g0Inverse = g0Inverses[k];
+            long z = 0, fk = 1;
+            long remaining = fe / f;
+            for (int d = 0; d < exponents[k]; d++) {
+                BigInteger hk = g0Inverse.modPow(BigInteger.valueOf(z), n).multiply(h).mod(n)
+                        .modPow(BigInteger.valueOf(remaining), n);
+                long digit = logs[k].lookup(hk);
+                if (digit < 0) return -1;
+                z += digit * fk;
+                fk *= f;
+                remaining /= f;
+            }
+            return z;
+        }
+    }
+
+//    baby-step giant-step log to a base gamma of order f: up to TABLE_MAX every
+//    power is stored, beyond that ceil(sqrt(f)) baby steps and giant steps of gamma^(-m)
+    static class SubgroupLog {
+        private final HashMap<BigInteger, Long> babySteps;
+        private final BigInteger n, giant;
+        private final long m, order;
+
+//        in, if not null, holds the baby steps written by writeTo
+        SubgroupLog(BigInteger gamma, BigInteger n, long order, DataInputStream in) {
+            this.n = n;
+            this.order = order;
+            this.m = order <= DecryptionTable.TABLE_MAX ? order : (long) Math.ceil(Math.sqrt((double) order));
+            this.babySteps = new HashMap<BigInteger, Long>((int) (m * 4 / 3 + 1));
+            try {
+                if (in != null && in.readLong() != m)
+                    throw new IOException("Benaloh.SubgroupLog: stored table does not match R");
+                byte[] entry = new byte[(n.bitLength() + 7) / 8];
+                BigInteger c = BigInteger.ONE;
+                for (long i = 0; i < m; i++) {
+                    if (in != null) {
+                        in.readFully(entry);
+                        c = new BigInteger(1, entry);
+                    }
+                    babySteps.putIfAbsent(c, i);
+                    if (in == null) c = c.multiply(gamma).mod(n);
+                }
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e.getMessage(), e);
+            }
+            this.giant = gamma.modPow(BigInteger.valueOf(m), n).modInverse(n);
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            int width = (n.bitLength() + 7) / 8;
+            BigInteger[] steps = new BigInteger[(int) m];
+            for (Map.Entry<BigInteger, Long> step : babySteps.entrySet()) steps[step.getValue().intValue()] = step.getKey();
+            out.writeLong(m);
+            for (BigInteger c : steps) {
+                byte[] magnitude = c.toByteArray();
+                int skip = magnitude.length > width ? 1 : 0;
+                out.write(new byte[width - magnitude.length + skip]);
+                out.write(magnitude, skip, magnitude.length - skip);
+            }
+        }
+
+        long lookup(BigInteger a) {
+            BigInteger c = a;
+            for (long j = 0; j * m < order; j++) {
+                Long i = babySteps.get(c);
+                if (i != null && j * m + i < order) return j * m + i;
+                c = c.multiply(giant).mod(n);
+            }
+            return -1;
+        }
+    }
+
+//    factors R < 2^62 into primes: trial division up to TABLE_MAX, then Pollard's rho on the
+//    cofactor, whose prime factors are all above TABLE_MAX
+    static Map<Long, Integer> factor(long R) {
+        Map<Long, Integer> factors = new LinkedHashMap<Long, Integer>();
+        for (long f = 2; f <= DecryptionTable.TABLE_MAX && f * f <= R; f += (f == 2 ? 1 : 2)) {
+            while (R % f == 0) {
+                factors.merge(f, 1, Integer::sum);
+                R /= f;
+            }
+        }
+        if (R > 1) factorLarge(BigInteger.valueOf(R), factors);
+        return factors;
+    }
+
+    private static void factorLarge(BigInteger R, Map<Long, Integer> factors) {
+//        no factor up to TABLE_MAX, so R up to TABLE_MAX^2 is prime
+        if (R.bitLength() <= 40 || R.isProbablePrime(64)) {
+            factors.merge(R.longValueExact(), 1, Integer::sum);
+            return;
+        }
+        BigInteger d = rho(R);
+        factorLarge(d, factors);
+        factorLarge(R.divide(d), factors);
+    }
+
+//    a nontrivial factor of the odd composite R by Pollard's rho, x -> x^2 + c
+    private static BigInteger rho(BigInteger R) {
+        for (long c = 1; ; c++) {
+            BigInteger C = BigInteger.valueOf(c);
+            BigInteger x = BigInteger.TWO, y = x, d = BigInteger.ONE;
+            while (d.equals(BigInteger.ONE)) {
+                x = x.multiply(x).add(C).mod(R);
+                y = y.multiply(y).add(C).mod(R);
+                y = y.multiply(y).add(C).mod(R);
+                d = x.subtract(y).abs().gcd(R);
+            }
+            if (!d.equals(R)) return d;
+        }
     }
 
     private PublicKey pubkey;
     private PrivateKey prikey;
     public BigInteger R;
     private final int cert=64;
+    private static final Metrics.Timer KEYGEN_TIMER=Metrics.timer("Benaloh.keyGeneration");
+    private static final Metrics.Timer ENCRYPT_TIMER=Metrics.timer("Benaloh.encrypt");
+    private static final Metrics.Timer DECRYPT_TIMER=Metrics.timer("Benaloh.decrypt");
+    private static final Metrics.Timer ENCRYPT_BATCH_TIMER=Metrics.timer("Benaloh.encryptBatch");
+    private static final Metrics.Timer DECRYPT_BATCH_TIMER=Metrics.timer("Benaloh.decryptBatch");
+    private static final Metrics.Timer ADD_TIMER=Metrics.timer("Benaloh.add");
+    private static final Metrics.Timer SUB_TIMER=Metrics.timer("Benaloh.sub");
+    private static final Metrics.Timer TABLE_TIMER=Metrics.timer("Benaloh.buildTable");
+    private static final Metrics.Counter TABLE_HIT=Metrics.counter("Benaloh.table.hit");
+    private static final Metrics.Counter TABLE_MISS=Metrics.counter("Benaloh.table.miss");
+    private static volatile Montgomery.Arithmetic arithmetic=Montgomery.defaultArithmetic();
 
 
     public PublicKey getPubkey() {
@@ -52,50 +324,160 @@ public class Benaloh {
         return prikey;
     }
 
+//    backend of the exponentiations in encrypt and decrypt, Montgomery.BIGINTEGER or
+//    Montgomery.ENGINE; both give the same ciphertexts and plaintexts
+    public static void useArithmetic(Montgomery.Arithmetic backend){
+        arithmetic=backend;
+    }
+
     public void keyGeneration(int k){
+        keyGeneration(k,199);
+    }
+
+//    key generation with block size R: plaintexts are in Z_R, R may be any odd number below
+//    2^62 whose prime factors are at most 2^40 (R must be odd, since gcd(q-1, R) = 1, and a
+//    prime factor f costs sqrt(f) baby steps in the decryption table)
+    public void keyGeneration(int k,long r){
+        long start=KEYGEN_TIMER.start();
 
 //        int r=GenerateR();
         BigInteger p, q, p_minus_one,q_minus_one,R;
-        R=BigInteger.valueOf(199);
+        R=BigInteger.valueOf(r);
+        if(r<3||r%2==0||R.bitLength()>62||R.bitLength()+16>k)
+            throw new IllegalArgumentException("Benaloh.keyGeneration: require odd 3 <= R < 2^62 and R at least 16 bits shorter than p");
+        Map<Long,Integer> factors=factor(r);
+        for(long f: factors.keySet())
+            if(f>DecryptionTable.PRIME_MAX)
+                throw new IllegalArgumentException("Benaloh.keyGeneration: require every prime factor of R at most 2^40");
         this.R=R;
+        SecureRandom random=Randomness.get();
 
+//        p = R*t+1 with gcd(t, R) = 1, so R | p-1 and gcd((p-1)/R, R) = 1 by construction
             do {
-                p = new BigInteger(k, cert, new SecureRandom());
-                p_minus_one=p.subtract(BigInteger.ONE);
-            }while(p_minus_one.mod(this.R).intValue()!=0
-                    || p_minus_one.divide(R).gcd(R).intValue()!=1);
+                BigInteger t;
+                do {
+                    t = new BigInteger(k - R.bitLength(), random).setBit(k - R.bitLength() - 1);
+                } while (!t.gcd(R).equals(BigInteger.ONE));
+                p_minus_one=R.multiply(t);
+                p = p_minus_one.add(BigInteger.ONE);
+            }while(!p.isProbablePrime(cert));
 
             do {
-                q = new BigInteger(k, cert,new SecureRandom());
+                q = new BigInteger(k, cert,random);
                 q_minus_one=q.subtract(BigInteger.ONE);
-            } while (p.compareTo(q) == 0 || q_minus_one.gcd(R).intValue()!=1);
+            } while (p.compareTo(q) == 0 || !q_minus_one.gcd(R).equals(BigInteger.ONE));
 
         BigInteger n=p.multiply(q);
         BigInteger phi=p_minus_one.multiply(q_minus_one);
 
 //        Now we have p and q and r with all conditions
-        BigInteger y=itemZStarN(n,phi,R);
-        prikey= new PrivateKey(phi,y.modPow(phi.divide(R),n));
+//        y^(phi/f) != 1 for every prime f | R, so that y^(phi/R) has order exactly R
+        BigInteger y;
+        boolean ok;
+        do {
+            y=itemZStarN(n,phi,R);
+            ok=true;
+            for(long f: factors.keySet())
+                ok&=!y.modPow(phi.divide(BigInteger.valueOf(f)),n).equals(BigInteger.ONE);
+        } while(!ok);
+        BigInteger exponentP=p_minus_one.divide(R);
+        prikey= new PrivateKey(phi,y.modPow(phi.divide(R),n),p,exponentP,y.modPow(exponentP,p));
         pubkey=new PublicKey(n,y);
+        KEYGEN_TIMER.stop(start);
 
     }
 
-    public BigInteger encrypt(int m){
+//    writes the key pair, R, the mod p decryption values and, if already built, the
+//    decryption table, so loadKeys needs no exponentiation or table building
+    public void saveKeys(Path path) throws IOException {
+        KeyStore store=new KeyStore("Benaloh");
+        store.putBigInteger("n",pubkey.getN());
+        store.putBigInteger("y",pubkey.getY());
+        store.putBigInteger("R",R);
+        if(prikey!=null){
+            store.putBigInteger("phi",prikey.getPhi());
+            store.putBigInteger("x",prikey.getX());
+            if(prikey.getP()!=null){
+                store.putBigInteger("p",prikey.getP());
+                store.putBigInteger("exponentP",prikey.getExponentP());
+                store.putBigInteger("xP",prikey.getXP());
+            }
+            DecryptionTable t=prikey.peekTable();
+            if(t!=null) store.put("table",t.toBytes());
+        }
+        store.write(path);
+    }
+
+//    reads a key pair written by saveKeys; the private key is null for a public-only store
+    public void loadKeys(Path path) throws IOException {
+        KeyStore store=KeyStore.read(path,"Benaloh");
+        pubkey=new PublicKey(store.getBigInteger("n"),store.getBigInteger("y"));
+        R=store.getBigInteger("R");
+        prikey=null;
+        if(!store.has("phi")) return;
+        if(store.has("p")){
+            BigInteger p=store.getBigInteger("p");
+            prikey=new PrivateKey(store.getBigInteger("phi"),store.getBigInteger("x"),
+                    p,store.getBigInteger("exponentP"),store.getBigInteger("xP"));
+            if(store.has("table"))
+                prikey.table=DecryptionTable.fromBytes(prikey.getXP(),p,R,store.get("table"));
+        }else{
+            prikey=new PrivateKey(store.getBigInteger("phi"),store.getBigInteger("x"));
+            if(store.has("table"))
+                prikey.table=DecryptionTable.fromBytes(prikey.getX(),pubkey.getN(),R,store.get("table"));
+        }
+    }
+
+    public BigInteger encrypt(long m){
+        long start=ENCRYPT_TIMER.start();
         BigInteger u=randomZStarN(this.pubkey.getN());
-        BigInteger cipher1=pubkey.getY().modPow(BigInteger.valueOf(m),pubkey.getN());
-        BigInteger cipher2=u.modPow(this.R,pubkey.getN());
-        return cipher1.multiply(cipher2).mod(pubkey.getN());
+        BigInteger cipher1=arithmetic.modPow(pubkey.getY(),BigInteger.valueOf(m),pubkey.getN());
+        BigInteger cipher2=arithmetic.modPow(u,this.R,pubkey.getN());
+        return ENCRYPT_TIMER.stop(start,cipher1.multiply(cipher2).mod(pubkey.getN()));
     }
 
-    public int decrypt(BigInteger cipher){
-        BigInteger a= cipher.modPow(this.prikey.getPhi().divide(this.R),this.pubkey.getN());
+    public long decrypt(BigInteger cipher){
+        long start=DECRYPT_TIMER.start();
+        BigInteger p=this.prikey.getP();
+        BigInteger a= p!=null ? arithmetic.modPow(cipher.mod(p),this.prikey.getExponentP(),p)
+                : arithmetic.modPow(cipher,this.prikey.getPhi().divide(this.R),this.pubkey.getN());
 
-        BigInteger c;
-        for(int i=0;i<R.intValue();i++){
-            c=this.prikey.getX().modPow(BigInteger.valueOf(i),this.pubkey.getN());
-            if(a.equals(c))return i;
-        }
-        return -1;
+        long m=this.prikey.getTable(this.pubkey.getN(),this.R).lookup(a);
+        (m<0 ? TABLE_MISS : TABLE_HIT).increment();
+        return DECRYPT_TIMER.stop(start,m);
+    }
+
+//    batch encryption, in parallel, ciphertexts keep the order of the messages
+//    parallelism bounds the worker threads, 0 uses the common fork/join pool
+    public BigInteger[] encrypt(long[] ms){
+        return encrypt(ms,0);
+    }
+
+    public BigInteger[] encrypt(long[] ms,int parallelism){
+        long start=ENCRYPT_BATCH_TIMER.start();
+        BigInteger[] cs=new BigInteger[ms.length];
+        Batch.run(ms.length,parallelism,i->cs[i]=encrypt(ms[i]));
+        return ENCRYPT_BATCH_TIMER.stop(start,cs);
+    }
+
+    public BigInteger[] encrypt(List<Long> ms,int parallelism){
+        return encrypt(ms.stream().mapToLong(Long::longValue).toArray(),parallelism);
+    }
+
+//    batch decryption, in parallel, plaintexts keep the order of the ciphertexts
+    public long[] decrypt(BigInteger[] cs){
+        return decrypt(cs,0);
+    }
+
+    public long[] decrypt(BigInteger[] cs,int parallelism){
+        long start=DECRYPT_BATCH_TIMER.start();
+        long[] ms=new long[cs.length];
+        Batch.run(cs.length,parallelism,i->ms[i]=decrypt(cs[i]));
+        return DECRYPT_BATCH_TIMER.stop(start,ms);
+    }
+
+    public long[] decrypt(List<BigInteger> cs,int parallelism){
+        return decrypt(cs.toArray(new BigInteger[0]),parallelism);
     }
 
     private int GenerateR(){
@@ -110,34 +492,28 @@ public class Benaloh {
     public static BigInteger itemZStarN(BigInteger n,BigInteger phi,BigInteger R) {
         BigInteger r;
         do {
-            r = new BigInteger(n.bitLength(), new
-                    SecureRandom());
-        } while (r.compareTo(n) >= 0 || r.gcd(n).intValue()
-                != 1||r.modPow(phi.divide(R),n).intValue()==1);
+            r = Randomness.randomZStarN(n);
+        } while (r.modPow(phi.divide(R),n).equals(BigInteger.ONE));
         return r;
     }
     public static BigInteger randomZStarN(BigInteger n) {
-        BigInteger r;
-        do {
-            r = new BigInteger(n.bitLength(), new
-                    SecureRandom());
-        } while (r.compareTo(n) >= 0 || r.gcd(n).intValue()
-                != 1);
-        return r;
+        return Randomness.randomZStarN(n);
     }
     public  BigInteger add(BigInteger c1, BigInteger c2) {
-          return c1.multiply(c2).mod(this.pubkey.getN());
+          long start=ADD_TIMER.start();
+          return ADD_TIMER.stop(start,c1.multiply(c2).mod(this.pubkey.getN()));
     }
     public  BigInteger sub(BigInteger c1, BigInteger c2) {
+        long start=SUB_TIMER.start();
         BigInteger c2_inverse=c2.modInverse(this.pubkey.getN());
-        return c1.multiply(c2_inverse).mod(this.pubkey.getN());
+        return SUB_TIMER.stop(start,c1.multiply(c2_inverse).mod(this.pubkey.getN()));
     }
     public static void main(String[] args) {
         Benaloh b=new Benaloh();
         b.keyGeneration(512);
         int message=100;
         BigInteger c=b.encrypt(message);
-        int m=b.decrypt(c);
+        long m=b.decrypt(c);
         if(m==message) System.out.println("encryption-decryption is ok");
         else System.out.println("no");
 
@@ -150,13 +526,61 @@ public class Benaloh {
         BigInteger cipher2=b.encrypt(message2);
 
         BigInteger result_cipher_add=b.add(cipher1,cipher2);
-        int result_addition=b.decrypt(result_cipher_add);
-        if((message1+message2)%b.R.intValue()==result_addition)System.out.println("addition feature is working correctly!");
+        long result_addition=b.decrypt(result_cipher_add);
+        if((message1+message2)%b.R.longValue()==result_addition)System.out.println("addition feature is working correctly!");
 //
 // Test for Subtraction E(message1-message2%r)=cipher1.(cipher2)^-1
        BigInteger result_cipher_sub=b.sub(cipher2,cipher1);
-       int result_sub=b.decrypt(result_cipher_sub);
-       if((message2-message1)%b.R.intValue()==result_sub)System.out.println("subtraction feature is working correctly!");
+       long result_sub=b.decrypt(result_cipher_sub);
+       if((message2-message1)%b.R.longValue()==result_sub)System.out.println("subtraction feature is working correctly!");
+
+//        Test for batch encryption-decryption
+        long[] messages=new long[64];
+        for(int i=0;i<messages.length;i++) messages[i]=i%b.R.longValue();
+        long[] decrypted=b.decrypt(b.encrypt(messages),2);
+        if(java.util.Arrays.equals(messages,decrypted))System.out.println("batch encryption-decryption is ok");
+
+//        Test for the key store
+        try {
+            java.nio.file.Path path=java.nio.file.Files.createTempFile("benaloh",".keys");
+            b.saveKeys(path);
+            Benaloh loaded=new Benaloh();
+            loaded.loadKeys(path);
+            java.nio.file.Files.delete(path);
+            if(loaded.decrypt(c)==message)System.out.println("key store is working correctly!");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+//        Test for a large smooth block size R = 3^10 * 5^5 * 7^4 * 11^3, about 49 bits per ciphertext
+        Benaloh big=new Benaloh();
+        big.keyGeneration(512,59049L*3125L*2401L*1331L);
+        long large=12345678901L;
+        long large_sum=big.decrypt(big.add(big.encrypt(large),big.encrypt(large)));
+        if(large_sum==(2*large)%big.R.longValue())System.out.println("large block size is working correctly!");
+
+//        Test for R = 1048583 * 1048589 * 1048601, beyond trial division, and for a prime R above 2^40
+        Benaloh rough=new Benaloh();
+        rough.keyGeneration(512,1048583L*1048589L*1048601L);
+        long rough_sum=rough.decrypt(rough.add(rough.encrypt(large),rough.encrypt(large)));
+        boolean rejected=false;
+        try {
+            new Benaloh().keyGeneration(512,1099511627791L);
+        } catch (IllegalArgumentException e) {
+            rejected=true;
+        }
+        if(rough_sum==(2*large)%rough.R.longValue()&&rejected)System.out.println("block size bounds are working correctly!");
+
+//        Test for the Montgomery backend: same seed, same ciphertext as the BigInteger backend
+        Randomness.useSeed(7);
+        BigInteger viaBigInteger=big.encrypt(large);
+        useArithmetic(Montgomery.ENGINE);
+        Randomness.useSeed(7);
+        BigInteger viaEngine=big.encrypt(large);
+        long engineDecrypted=big.decrypt(viaEngine);
+        useArithmetic(Montgomery.BIGINTEGER);
+        Randomness.useDrbg();
+        if(viaEngine.equals(viaBigInteger)&&engineDecrypted==large)System.out.println("Montgomery backend is working correctly!");
 
     }
 
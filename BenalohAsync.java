@@ -0,0 +1,42 @@
+package Benaloh;
+import HomomorphicService.HomomorphicService;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+//asynchronous facade of one Benaloh key pair: every call returns at once and runs on the
+//CPU threads of a HomomorphicService
+public class BenalohAsync {
+    private final HomomorphicService service;
+    private final Benaloh benaloh;
+    public BenalohAsync(HomomorphicService service,Benaloh benaloh){
+        this.service=service;
+        this.benaloh=benaloh;
+    }
+    public CompletableFuture<BigInteger> encrypt(long m){
+        return service.submit("Benaloh.encrypt",()->benaloh.encrypt(m));
+    }
+    public CompletableFuture<Long> decrypt(BigInteger c){
+        return service.submit("Benaloh.decrypt",()->benaloh.decrypt(c));
+    }
+    public CompletableFuture<BigInteger> add(BigInteger c1,BigInteger c2){
+        return service.submit("Benaloh.add",()->benaloh.add(c1,c2));
+    }
+    public CompletableFuture<BigInteger> sub(BigInteger c1,BigInteger c2){
+        return service.submit("Benaloh.sub",()->benaloh.sub(c1,c2));
+    }
+//    batches go in as one request per item, admitted or rejected as a whole
+    public CompletableFuture<BigInteger[]> encrypt(long[] ms){
+        List<Callable<BigInteger>> tasks=new ArrayList<Callable<BigInteger>>(ms.length);
+        for(long m:ms)
+            tasks.add(()->benaloh.encrypt(m));
+        return service.submitAll("Benaloh.encrypt",tasks).thenApply(cs->cs.toArray(new BigInteger[0]));
+    }
+    public CompletableFuture<long[]> decrypt(BigInteger[] cs){
+        List<Callable<Long>> tasks=new ArrayList<Callable<Long>>(cs.length);
+        for(BigInteger c:cs)
+            tasks.add(()->benaloh.decrypt(c));
+        return service.submitAll("Benaloh.decrypt",tasks).thenApply(ms->ms.stream().mapToLong(Long::longValue).toArray());
+    }
+}
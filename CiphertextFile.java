@@ -0,0 +1,290 @@
+package CiphertextFile;
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+/**
+ * @ClassName: CiphertextFile
+ * @Description: This is a compact binary file format for
+ * ciphertexts of fixed maximum width. The layout is
+ *
+ * magic "HECT" | version (int) | width (int) | count (long) |
+ * fingerprint length (int) | fingerprint | records
+ *
+ * and every record is a 4-byte length followed by width bytes,
+ * so record i sits at a fixed offset and can be read in place
+ * from a memory-mapped file. All integers are big-endian.
+ */
+public class CiphertextFile {
+    static final byte[] MAGIC = "HECT".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+    /**
+     * @Title: fingerprint
+     * @Description: This function returns the SHA-256 digest of
+     * a key, given as its length-prefixed components.
+     * @param parts
+     * The encoded key components.
+     * @return byte[] The 32-byte key fingerprint.
+     */
+    public static byte[] fingerprint(byte[]... parts) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            for (byte[] part : parts) {
+                sha.update(ByteBuffer.allocate(4).putInt(part.length).array());
+                sha.update(part);
+            }
+            return sha.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    /**
+     * @Title: fingerprint
+     * @Description: This function returns the SHA-256 digest of
+     * a key made of integers.
+     * @param parts
+     * The key components.
+     * @return byte[] The 32-byte key fingerprint.
+     */
+    public static byte[] fingerprint(BigInteger... parts) {
+        byte[][] encoded = new byte[parts.length][];
+        for (int i = 0; i < parts.length; i++) {
+            encoded[i] = parts[i].toByteArray();
+        }
+        return fingerprint(encoded);
+    }
+    /**
+     * @Title: widthOf
+     * @Description: This function returns the record width
+     * needed for integers below a modulus.
+     * @param modulus
+     * The modulus, e.g. n^2 for Paillier.
+     * @return int The width in bytes.
+     */
+    public static int widthOf(BigInteger modulus) {
+        return (modulus.bitLength() + 7) / 8;
+    }
+    /**
+     * @Title: toBytes
+     * @Description: This function returns the unsigned
+     * big-endian magnitude of a non-negative integer.
+     */
+    static byte[] toBytes(BigInteger c) {
+        byte[] bytes = c.toByteArray();
+        if (bytes.length > 1 && bytes[0] == 0) {
+            return Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        return bytes;
+    }
+    /**
+     * @ClassName: Writer
+     * @Description: This is a streaming writer. The record count
+     * in the header is filled in when the writer is closed.
+     */
+    public static class Writer implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final byte[] padding;
+        private final int width;
+        private final long countOffset;
+        private long count;
+        public Writer(Path path, int width, byte[] fingerprint)
+                throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            this.width = width;
+            this.padding = new byte[width];
+            this.buffer = ByteBuffer.allocateDirect(
+                    Math.max(BUFFER_SIZE, 4 + width));
+            buffer.put(MAGIC).putInt(VERSION).putInt(width);
+            this.countOffset = buffer.position();
+            buffer.putLong(0).putInt(fingerprint.length).put(fingerprint);
+        }
+        /**
+         * @Title: write
+         * @Description: This function appends one encoded
+         * ciphertext.
+         * @param record
+         * The encoded ciphertext, at most width bytes.
+         * @throws IOException
+         * If the record is wider than width, or the file
+         * cannot be written, there is an exception.
+         */
+        public void write(byte[] record) throws IOException {
+            if (record.length > width) {
+                throw new IOException("CiphertextFile.Writer.write(byte[] record): record of "
+                        + record.length + " bytes exceeds width " + width);
+            }
+            if (buffer.remaining() < 4 + width) {
+                flush();
+            }
+            buffer.putInt(record.length).put(record)
+                    .put(padding, 0, width - record.length);
+            count++;
+        }
+        public void write(BigInteger c) throws IOException {
+            write(toBytes(c));
+        }
+        public long getCount() {
+            return count;
+        }
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+                ByteBuffer header = ByteBuffer.allocate(8).putLong(count);
+                header.flip();
+                channel.write(header, countOffset);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+    /**
+     * @ClassName: Reader
+     * @Description: This is a random-access reader over a
+     * memory-mapped ciphertext file. Records are decoded only
+     * when asked for, so files with millions of ciphertexts are
+     * never materialized on the heap. Files beyond 2 GB are
+     * mapped in several regions.
+     */
+    public static class Reader implements Closeable {
+        private final FileChannel channel;
+        private final MappedByteBuffer[] regions;
+        private final int width, stride;
+        private final long count, dataOffset, recordsPerRegion;
+        private final byte[] fingerprint;
+        public Reader(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                ByteBuffer header = ByteBuffer.allocate(24);
+                channel.read(header, 0);
+                header.flip();
+                byte[] magic = new byte[MAGIC.length];
+                if (header.remaining() < 24) {
+                    throw new IOException("CiphertextFile.Reader: truncated header");
+                }
+                header.get(magic);
+                if (!Arrays.equals(magic, MAGIC)) {
+                    throw new IOException("CiphertextFile.Reader: not a ciphertext file");
+                }
+                int version = header.getInt();
+                if (version != VERSION) {
+                    throw new IOException("CiphertextFile.Reader: unsupported version "
+                            + version);
+                }
+                this.width = header.getInt();
+                this.count = header.getLong();
+                int fingerprintLength = header.getInt();
+                if (width <= 0 || width > Integer.MAX_VALUE - 4) {
+                    throw new IOException("CiphertextFile.Reader: invalid record width "
+                            + width);
+                }
+                if (count < 0) {
+                    throw new IOException("CiphertextFile.Reader: invalid record count "
+                            + count);
+                }
+                if (fingerprintLength < 0 || fingerprintLength > channel.size() - 24) {
+                    throw new IOException("CiphertextFile.Reader: invalid fingerprint length "
+                            + fingerprintLength);
+                }
+                this.fingerprint = new byte[fingerprintLength];
+                channel.read(ByteBuffer.wrap(fingerprint), 24);
+                this.stride = 4 + width;
+                this.dataOffset = 24 + fingerprint.length;
+                if ((channel.size() - dataOffset) / stride < count) {
+                    throw new IOException("CiphertextFile.Reader: truncated file");
+                }
+                this.recordsPerRegion = Math.max(1, Integer.MAX_VALUE / stride);
+                int n = (int) ((count + recordsPerRegion - 1) / recordsPerRegion);
+                this.regions = new MappedByteBuffer[n];
+                for (int i = 0; i < n; i++) {
+                    long first = i * recordsPerRegion;
+                    long records = Math.min(recordsPerRegion, count - first);
+                    regions[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                            dataOffset + first * stride, records * stride);
+                }
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+        /**
+         * @Title: Reader
+         * @Description: This function opens a ciphertext file and
+         * checks that it was written under the expected key.
+         * @throws IOException
+         * If the key fingerprints differ, there is an exception.
+         */
+        public Reader(Path path, byte[] expectedFingerprint)
+                throws IOException {
+            this(path);
+            if (!Arrays.equals(fingerprint, expectedFingerprint)) {
+                close();
+                throw new IOException("CiphertextFile.Reader: key fingerprint does not match");
+            }
+        }
+        public long size() {
+            return count;
+        }
+        public int getWidth() {
+            return width;
+        }
+        public byte[] getFingerprint() {
+            return fingerprint.clone();
+        }
+        /**
+         * @Title: get
+         * @Description: This function returns the encoded
+         * ciphertext at an index.
+         * @param index
+         * The record index, in [0, size()).
+         * @return byte[] The encoded ciphertext.
+         * @throws IOException
+         * If the record length is not in [0, width], there is an
+         * exception.
+         */
+        public byte[] get(long index) throws IOException {
+            if (index < 0 || index >= count) {
+                throw new IndexOutOfBoundsException("CiphertextFile.Reader.get: "
+                        + index);
+            }
+            ByteBuffer region = regions[(int) (index / recordsPerRegion)]
+                    .duplicate();
+            int offset = (int) (index % recordsPerRegion) * stride;
+            int length = region.getInt(offset);
+            if (length < 0 || length > width) {
+                throw new IOException("CiphertextFile.Reader.get: record " + index
+                        + " has invalid length " + length);
+            }
+            byte[] record = new byte[length];
+            region.position(offset + 4);
+            region.get(record);
+            return record;
+        }
+        public BigInteger getBigInteger(long index) throws IOException {
+            return new BigInteger(1, get(index));
+        }
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package Paillier;
+import Batch.Batch;
+import Randomness.Randomness;
+import java.math.BigInteger;
+/**
+ * @ClassName: DamgardJurik
+ * @Description: This is the Damgard-Jurik generalization of
+ * Paillier PKE. For a degree s, plaintexts are in Z_(n^s) and
+ * ciphertexts
+ *
+ * c = (1+n)^m * r^(n^s) mod n^(s+1)
+ *
+ * so a ciphertext grows by (s+1)/s instead of 2. It works with
+ * any Paillier key pair whose g is n+1: the public key is
+ * shared, and lambda decrypts for every s. s = 1 is Paillier
+ * itself.
+ */
+public class DamgardJurik {
+    private final Paillier.PublicKey pubkey;
+    private final int s;
+    private final BigInteger n, ns, ns1; // n, n^s, n^(s+1)
+    private final BigInteger[] npow; // n^j for j in [0, s+1]
+    private final BigInteger[] invFactorial; // (k!)^{-1} mod n^s for k in [0, s]
+    /**
+     * @Title: DamgardJurik
+     * @Description: This function sets up the scheme of degree
+     * s for a public key.
+     * @param pubkey
+     * The public key of Paillier PKE, with g = n+1.
+     * @param s
+     * The degree, at least 1.
+     */
+    public DamgardJurik(Paillier.PublicKey pubkey, int s) {
+        BigInteger n = pubkey.getN();
+        if (s < 1) {
+            throw new IllegalArgumentException("DamgardJurik: require s >= 1");
+        }
+        if (!pubkey.getG().equals(n.add(BigInteger.ONE))) {
+            throw new IllegalArgumentException("DamgardJurik: require g = n+1");
+        }
+        this.pubkey = pubkey;
+        this.s = s;
+        this.n = n;
+        this.npow = new BigInteger[s + 2];
+        npow[0] = BigInteger.ONE;
+        for (int j = 1; j <= s + 1; j++) {
+            npow[j] = npow[j - 1].multiply(n);
+        }
+        this.ns = npow[s];
+        this.ns1 = npow[s + 1];
+// k! is a unit mod n^s, since the prime factors of n are far larger than s
+        this.invFactorial = new BigInteger[s + 1];
+        BigInteger factorial = BigInteger.ONE;
+        for (int k = 0; k <= s; k++) {
+            if (k > 0) {
+                factorial = factorial.multiply(BigInteger.valueOf(k));
+            }
+            invFactorial[k] = factorial.modInverse(ns);
+        }
+    }
+    public Paillier.PublicKey getPubkey() {
+        return pubkey;
+    }
+    public int getS() {
+        return s;
+    }
+    /**
+     * @Title: getPlaintextModulus
+     * @Description: This function returns n^s.
+     */
+    public BigInteger getPlaintextModulus() {
+        return ns;
+    }
+    /**
+     * @Title: getModulus
+     * @Description: This function returns n^(s+1), the
+     * ciphertext modulus.
+     */
+    public BigInteger getModulus() {
+        return ns1;
+    }
+    /**
+     * @Title: encrypt
+     * @Description: This function is to encrypt the message.
+     * @param m
+     * The message, in Z_(n^s).
+     * @return BigInteger The ciphertext.
+     * @throws Exception
+     * If the message is not in Z_(n^s), there is an exception.
+     */
+    public BigInteger encrypt(BigInteger m) throws Exception {
+        if (m.signum() < 0 || m.compareTo(ns) >= 0) {
+            throw new Exception(
+                    "DamgardJurik.encrypt(BigInteger m): plaintext m is not in Z_(n^s)");
+        }
+        BigInteger r = Randomness.randomZStarN(n);
+        return onePlusNPow(m).multiply(r.modPow(ns, ns1)).mod(ns1);
+    }
+    /**
+     * @Title: decrypt
+     * @Description: This function is to decrypt the ciphertext.
+     * It raises c to lambda, modulo p^(s+1) and q^(s+1) when
+     * the private key holds p and q, which leaves (1+n)^(m*lambda),
+     * extracts m*lambda mod n^s digit by digit in base n and
+     * divides by lambda.
+     * @param c
+     * The ciphertext.
+     * @param prikey
+     * The private key of Paillier PKE.
+     * @return BigInteger The plaintext.
+     * @throws Exception
+     * If the cipher is not in Z*_(n^(s+1)), there is an
+     * exception.
+     */
+    public BigInteger decrypt(BigInteger c, Paillier.PrivateKey prikey)
+            throws Exception {
+        if (c.signum() < 0 || c.compareTo(ns1) >= 0
+                || !c.gcd(n).equals(BigInteger.ONE)) {
+            throw new Exception(
+                    "DamgardJurik.decrypt(BigInteger c, PrivateKey prikey): ciphertext c is not in Z*_(n^(s+1))");
+        }
+        BigInteger lambda = prikey.getLambda();
+        BigInteger a;
+        if (prikey.hasFactors()) {
+            BigInteger ps1 = prikey.getP().pow(s + 1);
+            BigInteger qs1 = prikey.getQ().pow(s + 1);
+            BigInteger ap = c.mod(ps1).modPow(lambda, ps1);
+            BigInteger aq = c.mod(qs1).modPow(lambda, qs1);
+// a = ap + p^(s+1) * ((aq - ap) * p^-(s+1) mod q^(s+1))
+            a = aq.subtract(ap).multiply(ps1.modInverse(qs1)).mod(qs1)
+                    .multiply(ps1).add(ap);
+        } else {
+            a = c.modPow(lambda, ns1);
+        }
+        return extract(a).multiply(lambda.modInverse(ns)).mod(ns);
+    }
+    /**
+     * @Title: add
+     * @Description: The function supports the homomorphic
+     * addition with two ciphertexts.
+     * @return BigInteger The return value is c1*c2 mod n^(s+1).
+     */
+    public BigInteger add(BigInteger c1, BigInteger c2) {
+        return c1.multiply(c2).mod(ns1);
+    }
+    /**
+     * @Title: mul
+     * @Description: The function supports the homomorphic
+     * multiplication with one ciphertext and one plaintext.
+     * @return BigInteger The return value is c^m mod n^(s+1).
+     */
+    public BigInteger mul(BigInteger c, BigInteger m) {
+        return c.modPow(m, ns1);
+    }
+    /**
+     * @Title: selfBlind
+     * @Description: The function supports the homomorphic
+     * self-blinding with one ciphertext and one random number.
+     * @param r
+     * A random number in Z*_n.
+     * @return BigInteger The return value is c*r^(n^s) mod n^(s+1).
+     */
+    public BigInteger selfBlind(BigInteger c, BigInteger r) {
+        return c.multiply(r.modPow(ns, ns1)).mod(ns1);
+    }
+    /**
+     * @Title: encrypt
+     * @Description: This function is to encrypt a batch of
+     * messages in parallel with at most parallelism threads,
+     * or on the common fork/join pool when it is 0.
+     */
+    public BigInteger[] encrypt(BigInteger[] ms, int parallelism)
+            throws Exception {
+        BigInteger[] cs = new BigInteger[ms.length];
+        Batch.run(ms.length, parallelism, i -> cs[i] = encrypt(ms[i]));
+        return cs;
+    }
+    public BigInteger[] decrypt(BigInteger[] cs, Paillier.PrivateKey prikey,
+                                int parallelism) throws Exception {
+        BigInteger[] ms = new BigInteger[cs.length];
+        Batch.run(cs.length, parallelism,
+                i -> ms[i] = decrypt(cs[i], prikey));
+        return ms;
+    }
+    /**
+     * @Title: onePlusNPow
+     * @Description: This function returns (1+n)^m mod n^(s+1)
+     * from the binomial sum of C(m,k)*n^k for k in [0, s], with
+     * no exponentiation.
+     */
+    private BigInteger onePlusNPow(BigInteger m) {
+        BigInteger result = BigInteger.ONE;
+        BigInteger falling = BigInteger.ONE; // m(m-1)...(m-k+1) mod n^s
+        for (int k = 1; k <= s; k++) {
+            falling = falling.multiply(m.subtract(BigInteger.valueOf(k - 1))).mod(ns);
+            BigInteger binomial = falling.multiply(invFactorial[k])
+                    .mod(npow[s + 1 - k]);
+            result = result.add(binomial.multiply(npow[k]));
+        }
+        return result.mod(ns1);
+    }
+    /**
+     * @Title: extract
+     * @Description: This function returns i mod n^s from
+     * a = (1+n)^i mod n^(s+1). Step j knows i mod n^(j-1) and
+     * lifts it to i mod n^j by taking L(a mod n^(j+1)) and
+     * removing the binomial terms of the known digits.
+     */
+    private BigInteger extract(BigInteger a) {
+        BigInteger i = BigInteger.ZERO;
+        for (int j = 1; j <= s; j++) {
+            BigInteger nj = npow[j];
+            BigInteger t1 = a.mod(npow[j + 1]).subtract(BigInteger.ONE).divide(n);
+            BigInteger t2 = i;
+            for (int k = 2; k <= j; k++) {
+                i = i.subtract(BigInteger.ONE);
+                t2 = t2.multiply(i).mod(nj);
+                t1 = t1.subtract(t2.multiply(npow[k - 1])
+                        .multiply(invFactorial[k])).mod(nj);
+            }
+            i = t1.mod(nj);
+        }
+        return i;
+    }
+}
@@ -0,0 +1,262 @@
+package HomomorphicService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+/**
+ * @ClassName: HomomorphicService
+ * @Description: This is the asynchronous execution layer
+ * behind PaillierAsync, BenalohAsync and BGNAsync. Requests
+ * return a CompletableFuture at once and run on a bounded pool
+ * of CPU threads that does nothing but crypto. Their futures
+ * are completed on a separate completion executor, so
+ * dependent stages never occupy a CPU thread; on Java 21 this
+ * can be a virtual-thread-per-task executor.
+ *
+ * Back-pressure: at most maxPending requests are in flight;
+ * beyond that a request fails at once with a
+ * RejectedExecutionException instead of queueing or blocking
+ * the caller.
+ *
+ * Batching: requests of the same operation are queued together
+ * and drained by at most one task per CPU thread. A drain task
+ * runs up to maxBatch requests in a row, so a burst of cheap
+ * requests such as additions costs a few pool tasks instead of
+ * one each.
+ *
+ * Cancellation: a request whose future is cancelled before a
+ * CPU thread reaches it is skipped.
+ */
+public class HomomorphicService implements AutoCloseable {
+    private final ThreadPoolExecutor cpu;
+    private final Executor completion;
+    private final Semaphore permits;
+    private final int cpuThreads, maxPending, maxBatch;
+    private final ConcurrentHashMap<String, Batcher> batchers = new ConcurrentHashMap<String, Batcher>();
+    /**
+     * @Title: HomomorphicService
+     * @Description: This function creates a service with one
+     * CPU thread per core, 1024 pending requests, batches of
+     * up to 32 requests and completion on the common fork/join
+     * pool.
+     */
+    public HomomorphicService() {
+        this(Runtime.getRuntime().availableProcessors(), 1024, 32,
+                ForkJoinPool.commonPool());
+    }
+    /**
+     * @Title: HomomorphicService
+     * @Description: This function creates a service.
+     * @param cpuThreads
+     * The number of threads running crypto.
+     * @param maxPending
+     * The maximum number of requests in flight.
+     * @param maxBatch
+     * The maximum number of requests one drain task runs.
+     * @param completion
+     * The executor completing the futures.
+     */
+    public HomomorphicService(int cpuThreads, int maxPending, int maxBatch,
+                              Executor completion) {
+        if (cpuThreads <= 0 || maxPending <= 0 || maxBatch <= 0) {
+            throw new IllegalArgumentException(
+                    "HomomorphicService: require cpuThreads, maxPending and maxBatch > 0");
+        }
+        this.cpuThreads = cpuThreads;
+        this.maxPending = maxPending;
+        this.maxBatch = maxBatch;
+        this.completion = completion;
+        this.permits = new Semaphore(maxPending);
+        AtomicInteger id = new AtomicInteger();
+        this.cpu = new ThreadPoolExecutor(cpuThreads, cpuThreads, 0L,
+                TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), r -> {
+            Thread t = new Thread(r, "homomorphic-cpu-" + id.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+    public int getPending() {
+        return maxPending - permits.availablePermits();
+    }
+    /**
+     * @Title: submit
+     * @Description: This function queues one request.
+     * @param operation
+     * The operation name; requests of one operation are
+     * batched together.
+     * @param task
+     * The request.
+     * @return CompletableFuture The result, or the exception
+     * thrown by the request. If maxPending requests are in
+     * flight or the service is closed, it fails with a
+     * RejectedExecutionException.
+     */
+    public <T> CompletableFuture<T> submit(String operation, Callable<T> task) {
+        if (cpu.isShutdown() || !permits.tryAcquire()) {
+            return rejected(1);
+        }
+        Request<T> request = new Request<T>(task);
+        enqueue(operation, request);
+        return request.future;
+    }
+    /**
+     * @Title: submitAll
+     * @Description: This function queues a batch of requests
+     * as a whole: either all of them fit under maxPending or
+     * none is queued. Cancelling the returned future cancels
+     * the requests not yet run.
+     * @param operation
+     * The operation name.
+     * @param tasks
+     * The requests.
+     * @return CompletableFuture The results in request order,
+     * or the first exception.
+     */
+    public <T> CompletableFuture<List<T>> submitAll(String operation,
+                                                    List<Callable<T>> tasks) {
+        if (cpu.isShutdown() || !permits.tryAcquire(tasks.size())) {
+            return rejected(tasks.size());
+        }
+        List<CompletableFuture<T>> parts = new ArrayList<CompletableFuture<T>>(tasks.size());
+        for (Callable<T> task : tasks) {
+            Request<T> request = new Request<T>(task);
+            parts.add(request.future);
+            enqueue(operation, request);
+        }
+        CompletableFuture<List<T>> result = CompletableFuture
+                .allOf(parts.toArray(new CompletableFuture<?>[0]))
+                .thenApply(v -> {
+                    List<T> values = new ArrayList<T>(parts.size());
+                    for (CompletableFuture<T> part : parts) {
+                        values.add(part.join());
+                    }
+                    return values;
+                });
+        result.whenComplete((v, e) -> {
+            if (result.isCancelled()) {
+                for (CompletableFuture<T> part : parts) {
+                    part.cancel(false);
+                }
+            }
+        });
+        return result;
+    }
+    /**
+     * @Title: close
+     * @Description: This function stops accepting requests.
+     * Queued requests still run.
+     */
+    @Override
+    public void close() {
+        cpu.shutdown();
+    }
+    private <T> CompletableFuture<T> rejected(int requests) {
+        CompletableFuture<T> future = new CompletableFuture<T>();
+        future.completeExceptionally(new RejectedExecutionException(cpu.isShutdown()
+                ? "HomomorphicService.submit: service is closed"
+                : "HomomorphicService.submit: " + requests + " more requests exceed "
+                + maxPending + " pending"));
+        return future;
+    }
+    private void enqueue(String operation, Request<?> request) {
+        request.future.whenComplete((v, e) -> permits.release());
+        batchers.computeIfAbsent(operation, o -> new Batcher()).add(request);
+    }
+    /**
+     * @ClassName: Request
+     * @Description: One queued request and its future.
+     */
+    private final class Request<T> {
+        final Callable<T> task;
+        final CompletableFuture<T> future = new CompletableFuture<T>();
+        Request(Callable<T> task) {
+            this.task = task;
+        }
+        void run() {
+            if (future.isDone()) {
+                return; // cancelled while queued
+            }
+            try {
+                T value = task.call();
+                complete(() -> future.complete(value));
+            } catch (Throwable e) {
+                complete(() -> future.completeExceptionally(e));
+            }
+        }
+        private void complete(Runnable action) {
+            try {
+                completion.execute(action);
+            } catch (RejectedExecutionException e) {
+                action.run();
+            }
+        }
+    }
+    /**
+     * @ClassName: Batcher
+     * @Description: The queue of one operation and its drain
+     * tasks, at most cpuThreads of them at a time. A drain task
+     * takes its share of the queue, up to maxBatch requests, and
+     * reschedules itself while requests remain.
+     */
+    private final class Batcher implements Runnable {
+        private final ConcurrentLinkedQueue<Request<?>> queue = new ConcurrentLinkedQueue<Request<?>>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicInteger drainers = new AtomicInteger();
+        void add(Request<?> request) {
+            queue.add(request);
+            queued.incrementAndGet();
+            schedule();
+        }
+        private void schedule() {
+            int d;
+            while (queued.get() > 0 && (d = drainers.get()) < cpuThreads) {
+                if (drainers.compareAndSet(d, d + 1)) {
+                    try {
+                        cpu.execute(this);
+                    } catch (RejectedExecutionException e) {
+                        drainers.decrementAndGet();
+                        failQueued(e);
+                    }
+                    return;
+                }
+            }
+        }
+        @Override
+        public void run() {
+// after close, the running drain tasks empty the queue since none can be scheduled
+            int take = cpu.isShutdown() ? Integer.MAX_VALUE
+                    : Math.max(1, Math.min(maxBatch, queued.get() / cpuThreads));
+            try {
+                for (int i = 0; i < take; i++) {
+                    Request<?> request = queue.poll();
+                    if (request == null) {
+                        break;
+                    }
+                    queued.decrementAndGet();
+                    request.run();
+                }
+            } finally {
+                drainers.decrementAndGet();
+            }
+// a request added while this task was finishing may have seen no free drainer
+            schedule();
+        }
+        private void failQueued(RejectedExecutionException e) {
+            Request<?> request;
+            while ((request = queue.poll()) != null) {
+                queued.decrementAndGet();
+                request.future.completeExceptionally(e);
+            }
+        }
+    }
+}
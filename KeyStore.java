@@ -0,0 +1,163 @@
+package KeyStore;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+/**
+ * @ClassName: KeyStore
+ * @Description: This is a versioned binary key-store format.
+ * A key store holds the name of a scheme and a list of named
+ * fields, each one a byte string. The layout is
+ *
+ * magic "HEKS" | version (int) | scheme (UTF) | field count (int) |
+ * { name (UTF) | length (int) | bytes }*
+ *
+ * Schemes put their key components and any precomputed tables
+ * in the fields, so loading a key needs no group operations.
+ */
+public class KeyStore {
+    static final byte[] MAGIC = "HEKS".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+    private final String scheme;
+    private final Map<String, byte[]> fields = new LinkedHashMap<String, byte[]>();
+    public KeyStore(String scheme) {
+        this.scheme = scheme;
+    }
+    public String getScheme() {
+        return scheme;
+    }
+    public boolean has(String name) {
+        return fields.containsKey(name);
+    }
+    public void put(String name, byte[] value) {
+        fields.put(name, value);
+    }
+    public void putBigInteger(String name, BigInteger value) {
+        put(name, value.toByteArray());
+    }
+    public void putLong(String name, long value) {
+        put(name, ByteBuffer.allocate(8).putLong(value).array());
+    }
+    public void putString(String name, String value) {
+        put(name, value.getBytes(StandardCharsets.UTF_8));
+    }
+    /**
+     * @Title: get
+     * @Description: This function returns a field.
+     * @param name
+     * The field name.
+     * @return byte[] The field value.
+     * @throws IOException
+     * If the key store has no such field, there is an
+     * exception.
+     */
+    public byte[] get(String name) throws IOException {
+        byte[] value = fields.get(name);
+        if (value == null) {
+            throw new IOException("KeyStore.get(String name): no field " + name
+                    + " in " + scheme + " key store");
+        }
+        return value;
+    }
+    public BigInteger getBigInteger(String name) throws IOException {
+        return new BigInteger(get(name));
+    }
+    public long getLong(String name) throws IOException {
+        return ByteBuffer.wrap(get(name)).getLong();
+    }
+    public String getString(String name) throws IOException {
+        return new String(get(name), StandardCharsets.UTF_8);
+    }
+    /**
+     * @Title: write
+     * @Description: This function writes the key store to a
+     * temporary file and moves it over path, so readers never
+     * see a partly written key store.
+     * @param path
+     * The key store file.
+     * @throws IOException
+     * If the file cannot be written, there is an exception.
+     */
+    public void write(Path path) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(scheme);
+        out.writeInt(fields.size());
+        for (Map.Entry<String, byte[]> field : fields.entrySet()) {
+            out.writeUTF(field.getKey());
+            out.writeInt(field.getValue().length);
+            out.write(field.getValue());
+        }
+        out.flush();
+        Path dir = path.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, ".keystore", ".tmp");
+        try {
+            Files.write(tmp, bytes.toByteArray());
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+    /**
+     * @Title: read
+     * @Description: This function reads a key store and checks
+     * that it belongs to the expected scheme.
+     * @param path
+     * The key store file.
+     * @param scheme
+     * The expected scheme name.
+     * @return KeyStore The key store.
+     * @throws IOException
+     * If the file is not a key store of this version and
+     * scheme, there is an exception.
+     */
+    public static KeyStore read(Path path, String scheme) throws IOException {
+// names were written with writeUTF, so they are read back as modified UTF-8
+        DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(Files.readAllBytes(path)));
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("KeyStore.read: not a key store");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("KeyStore.read: unsupported version " + version);
+            }
+            KeyStore store = new KeyStore(in.readUTF());
+            if (!store.scheme.equals(scheme)) {
+                throw new IOException("KeyStore.read: expected a " + scheme
+                        + " key store, found " + store.scheme);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                int length = in.readInt();
+                if (length < 0 || length > in.available()) {
+                    throw new IOException("KeyStore.read: truncated key store");
+                }
+                byte[] value = new byte[length];
+                in.readFully(value);
+                store.put(name, value);
+            }
+            return store;
+        } catch (EOFException e) {
+            throw new IOException("KeyStore.read: truncated key store", e);
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package Metrics;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ObjectName;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+/**
+ * @ClassName: Metrics
+ * @Description: This is the instrumentation layer of the three
+ * schemes. Each operation owns a Timer, which counts calls and
+ * keeps a latency histogram, and validity checks and lookup
+ * tables own Counters. While metrics are enabled every timed
+ * call is also committed as a homomorphic.Operation JFR event,
+ * and the counters are sampled as homomorphic.Counter events.
+ * Everything is readable through the MXBean registered as
+ * homomorphic:type=Metrics.
+ *
+ * Metrics start disabled unless -Dhomomorphic.metrics=true is
+ * given. While disabled, Timer.start returns 0 after one
+ * volatile read and stop and increment return at once, so an
+ * instrumented call costs no clock reads and no allocation.
+ */
+public class Metrics {
+    public static final String OBJECT_NAME = "homomorphic:type=Metrics";
+    private static volatile boolean enabled = Boolean.getBoolean("homomorphic.metrics");
+    private static final Map<String, Timer> timers = new ConcurrentHashMap<String, Timer>();
+    private static final Map<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(),
+                    new ObjectName(OBJECT_NAME));
+        } catch (Exception e) {
+// no platform MBean server, or the bean came from another class loader
+        }
+        FlightRecorder.addPeriodicEvent(CounterEvent.class, Metrics::emitCounters);
+    }
+    public static boolean isEnabled() {
+        return enabled;
+    }
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+    /**
+     * @Title: timer
+     * @Description: This function returns the timer of an
+     * operation, creating it on first use. Callers keep it in a
+     * static field.
+     * @param name
+     * The operation, e.g. "Paillier.encrypt".
+     * @return Timer The timer.
+     */
+    public static Timer timer(String name) {
+        return timers.computeIfAbsent(name, Timer::new);
+    }
+    /**
+     * @Title: counter
+     * @Description: This function returns a named event
+     * counter, creating it on first use.
+     * @param name
+     * The event, e.g. "Benaloh.table.miss".
+     * @return Counter The counter.
+     */
+    public static Counter counter(String name) {
+        return counters.computeIfAbsent(name, Counter::new);
+    }
+    /**
+     * @Title: reset
+     * @Description: This function zeroes every timer and
+     * counter.
+     */
+    public static void reset() {
+        for (Timer timer : timers.values()) {
+            timer.reset();
+        }
+        for (Counter counter : counters.values()) {
+            counter.count.reset();
+        }
+    }
+    /**
+     * @ClassName: Timer
+     * @Description: The call count and latency histogram of one
+     * operation. The histogram has four buckets per power of
+     * two of nanoseconds, so a percentile is off by at most
+     * 25%.
+     *
+     * long start = TIMER.start();
+     * ...
+     * return TIMER.stop(start, result);
+     */
+    public static class Timer {
+        private static final int BUCKETS = 256;
+        private final String name;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+        Timer(String name) {
+            this.name = name;
+        }
+        public String getName() {
+            return name;
+        }
+        /**
+         * @Title: start
+         * @Description: This function returns the start time of
+         * a call, or 0 while metrics are disabled.
+         */
+        public long start() {
+            return enabled ? System.nanoTime() : 0L;
+        }
+        /**
+         * @Title: stop
+         * @Description: This function records a call begun at
+         * start. Calls started while metrics were disabled are
+         * ignored.
+         */
+        public void stop(long start) {
+            if (start != 0L) {
+                record(System.nanoTime() - start);
+            }
+        }
+        public <T> T stop(long start, T result) {
+            stop(start);
+            return result;
+        }
+        public long stop(long start, long result) {
+            stop(start);
+            return result;
+        }
+        private void record(long nanos) {
+            count.increment();
+            total.add(nanos);
+            histogram.incrementAndGet(bucket(nanos));
+            OperationEvent event = new OperationEvent();
+            if (event.isEnabled()) {
+                event.operation = name;
+                event.elapsed = nanos;
+                event.commit();
+            }
+        }
+        public long getCount() {
+            return count.sum();
+        }
+        public double getMeanMicros() {
+            long n = count.sum();
+            return n == 0 ? 0 : total.sum() / 1e3 / n;
+        }
+        /**
+         * @Title: getPercentileMicros
+         * @Description: This function returns the upper bound of
+         * the histogram bucket holding the q-th quantile.
+         * @param q
+         * The quantile, in (0, 1].
+         * @return double The latency in microseconds.
+         */
+        public double getPercentileMicros(double q) {
+            long[] snapshot = new long[BUCKETS];
+            long n = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = histogram.get(i);
+                n += snapshot[i];
+            }
+            long rank = (long) Math.ceil(q * n);
+            for (int i = 0; i < BUCKETS; i++) {
+                rank -= snapshot[i];
+                if (rank <= 0 && snapshot[i] != 0) {
+                    return upperBound(i) / 1e3;
+                }
+            }
+            return 0;
+        }
+        void reset() {
+            count.reset();
+            total.reset();
+            for (int i = 0; i < BUCKETS; i++) {
+                histogram.set(i, 0);
+            }
+        }
+// bucket 4(e-1)+s holds [(4+s)*2^(e-2), (5+s)*2^(e-2)) for e >= 2
+        static int bucket(long nanos) {
+            if (nanos < 4) {
+                return (int) Math.max(nanos, 0);
+            }
+            int e = 63 - Long.numberOfLeadingZeros(nanos);
+            return 4 * (e - 1) + (int) ((nanos >>> (e - 2)) & 3);
+        }
+        static long upperBound(int bucket) {
+            if (bucket < 4) {
+                return bucket;
+            }
+            int e = bucket / 4 + 1;
+            return ((5L + bucket % 4) << (e - 2)) - 1;
+        }
+    }
+    /**
+     * @ClassName: Counter
+     * @Description: A count of events such as rejected inputs
+     * or lookup-table hits and misses.
+     */
+    public static class Counter {
+        private final String name;
+        private final LongAdder count = new LongAdder();
+        Counter(String name) {
+            this.name = name;
+        }
+        public String getName() {
+            return name;
+        }
+        public void increment() {
+            if (enabled) {
+                count.increment();
+            }
+        }
+        public long getCount() {
+            return count.sum();
+        }
+    }
+    @Name("homomorphic.Operation")
+    @Label("Homomorphic Operation")
+    @Category("Homomorphic Encryption")
+    @Description("One timed scheme operation")
+    @StackTrace(false)
+    static class OperationEvent extends Event {
+        @Label("Operation")
+        String operation;
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+    }
+    @Name("homomorphic.Counter")
+    @Label("Homomorphic Counter")
+    @Category("Homomorphic Encryption")
+    @Description("The value of an event counter")
+    @StackTrace(false)
+    @Period("1 s")
+    static class CounterEvent extends Event {
+        @Label("Counter")
+        String counter;
+        @Label("Count")
+        long count;
+    }
+    private static void emitCounters() {
+        for (Counter counter : counters.values()) {
+            CounterEvent event = new CounterEvent();
+            event.counter = counter.name;
+            event.count = counter.getCount();
+            event.commit();
+        }
+    }
+    /**
+     * @ClassName: MetricsMXBean
+     * @Description: The JMX view of the metrics. Maps are keyed
+     * by operation or counter name.
+     */
+    public interface MetricsMXBean {
+        boolean isEnabled();
+        void setEnabled(boolean enabled);
+        Map<String, Long> getOperationCounts();
+        Map<String, Double> getMeanMicros();
+        Map<String, Double> getP99Micros();
+        Map<String, Long> getCounters();
+        double getPercentileMicros(String operation, double q);
+        void reset();
+    }
+    static class Bean implements MetricsMXBean {
+        public boolean isEnabled() {
+            return Metrics.isEnabled();
+        }
+        public void setEnabled(boolean on) {
+            Metrics.setEnabled(on);
+        }
+        public Map<String, Long> getOperationCounts() {
+            Map<String, Long> result = new TreeMap<String, Long>();
+            for (Timer timer : timers.values()) {
+                result.put(timer.name, timer.getCount());
+            }
+            return result;
+        }
+        public Map<String, Double> getMeanMicros() {
+            Map<String, Double> result = new TreeMap<String, Double>();
+            for (Timer timer : timers.values()) {
+                result.put(timer.name, timer.getMeanMicros());
+            }
+            return result;
+        }
+        public Map<String, Double> getP99Micros() {
+            Map<String, Double> result = new TreeMap<String, Double>();
+            for (Timer timer : timers.values()) {
+                result.put(timer.name, timer.getPercentileMicros(0.99));
+            }
+            return result;
+        }
+        public Map<String, Long> getCounters() {
+            Map<String, Long> result = new TreeMap<String, Long>();
+            for (Counter counter : counters.values()) {
+                result.put(counter.name, counter.getCount());
+            }
+            return result;
+        }
+        public double getPercentileMicros(String operation, double q) {
+            Timer timer = timers.get(operation);
+            return timer == null ? 0 : timer.getPercentileMicros(q);
+        }
+        public void reset() {
+            Metrics.reset();
+        }
+    }
+}
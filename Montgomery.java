@@ -0,0 +1,354 @@
+package Montgomery;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+/**
+ * @ClassName: Montgomery
+ * @Description: This is Montgomery arithmetic for one fixed
+ * odd modulus N of k 64-bit limbs. Numbers are little-endian
+ * long[] limbs, and multiply writes a*b*R^{-1} mod N, with
+ * R = 2^(64k), into a caller-owned array without allocating.
+ * modPow runs a sliding-window exponentiation in a workspace
+ * owned by the calling thread, so after the first call on a
+ * thread it allocates only the byte arrays that carry its
+ * BigInteger base in and its result out.
+ *
+ * Paillier and Benaloh take their exponentiations from an
+ * Arithmetic backend: BIGINTEGER, the default, is
+ * BigInteger.modPow, and ENGINE runs this class with one cached
+ * instance per modulus. ENGINE is the default when
+ * -Dhomomorphic.arithmetic=montgomery is given. Both return
+ * the same numbers bit for bit. BIGINTEGER stays the default
+ * because HotSpot runs BigInteger.modPow on intrinsic
+ * Montgomery kernels, which a pure-Java loop does not beat;
+ * ENGINE is for JVMs without them and for callers that keep
+ * their numbers in limbs.
+ */
+public class Montgomery {
+    private static final int[] WINDOW_THRESHOLDS = {7, 25, 81, 241, 673, 1793}; // exponent bits per window width
+    private static final int MAX_WINDOW = WINDOW_THRESHOLDS.length + 1;
+    private static final int CACHE_LIMIT = 64; // cached ENGINE instances
+    private static final Map<BigInteger, Montgomery> engines = new ConcurrentHashMap<BigInteger, Montgomery>();
+    /**
+     * @ClassName: Arithmetic
+     * @Description: A modular exponentiation backend.
+     */
+    public interface Arithmetic {
+        BigInteger modPow(BigInteger base, BigInteger exponent, BigInteger modulus);
+    }
+    public static final Arithmetic BIGINTEGER = BigInteger::modPow;
+    public static final Arithmetic ENGINE = (base, exponent, modulus) -> {
+        if (!modulus.testBit(0) || modulus.bitLength() < 2) {
+            return base.modPow(exponent, modulus); // Montgomery needs an odd modulus
+        }
+        Montgomery engine = engines.get(modulus);
+        if (engine == null) {
+            if (engines.size() >= CACHE_LIMIT) {
+                engines.clear();
+            }
+            engine = engines.computeIfAbsent(modulus, Montgomery::new);
+        }
+        return engine.modPow(base, exponent);
+    };
+    /**
+     * @Title: defaultArithmetic
+     * @Description: This function returns ENGINE if
+     * -Dhomomorphic.arithmetic=montgomery is given and
+     * BIGINTEGER otherwise.
+     */
+    public static Arithmetic defaultArithmetic() {
+        return "montgomery".equalsIgnoreCase(System.getProperty("homomorphic.arithmetic"))
+                ? ENGINE : BIGINTEGER;
+    }
+    private final BigInteger modulus;
+    private final int k; // limbs
+    private final long[] n; // modulus limbs
+    private final long n0; // -N^{-1} mod 2^64
+    private final BigInteger r; // R mod N
+    private final long[] one; // R mod N, 1 in Montgomery form
+    private final long[] r2; // R^2 mod N, for converting into Montgomery form
+    private final ThreadLocal<Workspace> workspaces;
+    /**
+     * @ClassName: Workspace
+     * @Description: The buffers of one thread's modPow: the
+     * odd powers of the base, the running result, the base, the
+     * number 1 and the multiply scratch.
+     */
+    private static final class Workspace {
+        final long[][] table;
+        final long[] acc, base, unit, t;
+        Workspace(int k) {
+            table = new long[1 << (MAX_WINDOW - 1)][k];
+            acc = new long[k];
+            base = new long[k];
+            unit = new long[k];
+            unit[0] = 1L;
+            t = new long[k + 2];
+        }
+    }
+    /**
+     * @Title: Montgomery
+     * @Description: This function sets up the arithmetic for a
+     * modulus.
+     * @param modulus
+     * The modulus, odd and greater than 1.
+     */
+    public Montgomery(BigInteger modulus) {
+        if (!modulus.testBit(0) || modulus.compareTo(BigInteger.ONE) <= 0) {
+            throw new IllegalArgumentException("Montgomery: require an odd modulus > 1");
+        }
+        this.modulus = modulus;
+        this.k = (modulus.bitLength() + 63) / 64;
+        this.n = limbs(modulus, new long[k], k);
+        BigInteger word = BigInteger.ONE.shiftLeft(64);
+        this.n0 = word.subtract(modulus.mod(word).modInverse(word)).longValue();
+        this.r = BigInteger.ONE.shiftLeft(64 * k).mod(modulus);
+        this.one = limbs(r, new long[k], k);
+        this.r2 = limbs(BigInteger.ONE.shiftLeft(128 * k).mod(modulus), new long[k], k);
+        this.workspaces = ThreadLocal.withInitial(() -> new Workspace(k));
+    }
+    public BigInteger getModulus() {
+        return modulus;
+    }
+    /**
+     * @Title: getLimbs
+     * @Description: This function returns k, the length of the
+     * limb arrays.
+     */
+    public int getLimbs() {
+        return k;
+    }
+    /**
+     * @Title: getR
+     * @Description: This function returns R mod N.
+     */
+    public BigInteger getR() {
+        return r;
+    }
+    /**
+     * @Title: toLimbs
+     * @Description: This function writes x, reduced mod N if it
+     * is not below N, into k limbs. It reads x through
+     * toByteArray, the one copy of x this allocates.
+     * @param x
+     * A non-negative number.
+     * @param dst
+     * The k-limb destination.
+     * @return long[] dst.
+     */
+    public long[] toLimbs(BigInteger x, long[] dst) {
+        if (x.compareTo(modulus) >= 0) {
+            x = x.mod(modulus);
+        }
+        return limbs(x, dst, k);
+    }
+    private static long[] limbs(BigInteger x, long[] dst, int k) {
+        byte[] bytes = x.toByteArray();
+        Arrays.fill(dst, 0, k, 0L);
+        for (int i = 0; i < bytes.length && i < 8 * k; i++) {
+            dst[i >>> 3] |= (bytes[bytes.length - 1 - i] & 0xFFL) << (8 * (i & 7));
+        }
+        return dst;
+    }
+    /**
+     * @Title: toBigInteger
+     * @Description: This function returns the number held in k
+     * limbs.
+     */
+    public BigInteger toBigInteger(long[] a) {
+        byte[] bytes = new byte[8 * k];
+        for (int i = 0; i < k; i++) {
+            long limb = a[i];
+            for (int b = 0; b < 8; b++) {
+                bytes[bytes.length - 1 - 8 * i - b] = (byte) (limb >>> (8 * b));
+            }
+        }
+        return new BigInteger(1, bytes);
+    }
+    /**
+     * @Title: newScratch
+     * @Description: This function returns a scratch array for
+     * multiply, which one thread can reuse for every call.
+     */
+    public long[] newScratch() {
+        return new long[k + 2];
+    }
+    /**
+     * @Title: multiply
+     * @Description: This function writes a*b*R^{-1} mod N into
+     * out by coarsely integrated operand scanning. out may be a
+     * or b.
+     * @param a
+     * A number below N, in k limbs.
+     * @param b
+     * A number below N, in k limbs.
+     * @param out
+     * The k-limb result.
+     * @param t
+     * A scratch array from newScratch.
+     */
+    public void multiply(long[] a, long[] b, long[] out, long[] t) {
+        Arrays.fill(t, 0, k + 2, 0L);
+        for (int i = 0; i < k; i++) {
+// t += a * b[i]
+            long bi = b[i];
+            long c = 0;
+            for (int j = 0; j < k; j++) {
+                long lo = a[j] * bi;
+                long hi = unsignedMultiplyHigh(a[j], bi);
+                long s = t[j] + lo;
+                hi += Long.compareUnsigned(s, lo) < 0 ? 1 : 0;
+                long s2 = s + c;
+                hi += Long.compareUnsigned(s2, s) < 0 ? 1 : 0;
+                t[j] = s2;
+                c = hi;
+            }
+            long top = t[k] + c;
+            t[k + 1] = Long.compareUnsigned(top, c) < 0 ? 1 : 0;
+            t[k] = top;
+// t = (t + m * N) / 2^64, with m chosen so the low limb cancels
+            long m = t[0] * n0;
+            long lo0 = m * n[0];
+            c = unsignedMultiplyHigh(m, n[0])
+                    + (Long.compareUnsigned(t[0] + lo0, lo0) < 0 ? 1 : 0);
+            for (int j = 1; j < k; j++) {
+                long lo = m * n[j];
+                long hi = unsignedMultiplyHigh(m, n[j]);
+                long s = t[j] + lo;
+                hi += Long.compareUnsigned(s, lo) < 0 ? 1 : 0;
+                long s2 = s + c;
+                hi += Long.compareUnsigned(s2, s) < 0 ? 1 : 0;
+                t[j - 1] = s2;
+                c = hi;
+            }
+            top = t[k] + c;
+            t[k - 1] = top;
+            t[k] = t[k + 1] + (Long.compareUnsigned(top, c) < 0 ? 1 : 0);
+        }
+// t < 2N: subtract N once if t >= N
+        boolean subtract = t[k] != 0;
+        if (!subtract) {
+            subtract = true;
+            for (int j = k - 1; j >= 0; j--) {
+                if (t[j] != n[j]) {
+                    subtract = Long.compareUnsigned(t[j], n[j]) > 0;
+                    break;
+                }
+            }
+        }
+        if (subtract) {
+            long borrow = 0;
+            for (int j = 0; j < k; j++) {
+                long d = t[j] - n[j] - borrow;
+                borrow = Long.compareUnsigned(t[j], n[j]) < 0
+                        || (borrow != 0 && t[j] == n[j]) ? 1 : 0;
+                out[j] = d;
+            }
+        } else {
+            System.arraycopy(t, 0, out, 0, k);
+        }
+    }
+    /**
+     * @Title: toMontgomery
+     * @Description: This function writes a*R mod N into out, so
+     * that multiply of two such numbers stays in this form.
+     */
+    public void toMontgomery(long[] a, long[] out, long[] t) {
+        multiply(a, r2, out, t);
+    }
+    /**
+     * @Title: fromMontgomery
+     * @Description: This function writes a*R^{-1} mod N into
+     * out, undoing toMontgomery.
+     */
+    public void fromMontgomery(long[] a, long[] out, long[] t) {
+        multiply(a, workspaces.get().unit, out, t);
+    }
+    /**
+     * @Title: modPow
+     * @Description: This function returns base^exponent mod N,
+     * the same value as BigInteger.modPow.
+     * @param base
+     * The base.
+     * @param exponent
+     * The exponent; a negative one raises the inverse of base.
+     * @return BigInteger base^exponent mod N.
+     */
+    public BigInteger modPow(BigInteger base, BigInteger exponent) {
+        if (exponent.signum() < 0) {
+            base = base.modInverse(modulus);
+            exponent = exponent.negate();
+        } else if (base.signum() < 0) {
+            base = base.mod(modulus);
+        }
+        Workspace w = workspaces.get();
+        toLimbs(base, w.base);
+        modPow(w.base, exponent, w.acc);
+        return toBigInteger(w.acc);
+    }
+    /**
+     * @Title: modPow
+     * @Description: This function writes base^exponent mod N
+     * into out with no allocation. out may be base.
+     * @param base
+     * A number below N, in k limbs.
+     * @param exponent
+     * A non-negative exponent.
+     * @param out
+     * The k-limb result.
+     */
+    public void modPow(long[] base, BigInteger exponent, long[] out) {
+        Workspace w = workspaces.get();
+        int bits = exponent.bitLength();
+        int width = 1;
+        while (width < MAX_WINDOW && bits > WINDOW_THRESHOLDS[width - 1]) {
+            width++;
+        }
+// table[i] = base^(2i+1) in Montgomery form
+        long[][] table = w.table;
+        long[] t = w.t, acc = w.acc;
+        multiply(base, r2, table[0], t);
+        if (width > 1) {
+            multiply(table[0], table[0], acc, t);
+            for (int i = 1; i < 1 << (width - 1); i++) {
+                multiply(table[i - 1], acc, table[i], t);
+            }
+        }
+        System.arraycopy(one, 0, acc, 0, k);
+        boolean started = false; // acc is still 1, so squaring it can be skipped
+        int i = bits - 1;
+        while (i >= 0) {
+            if (!exponent.testBit(i)) {
+                if (started) {
+                    multiply(acc, acc, acc, t);
+                }
+                i--;
+                continue;
+            }
+            int j = Math.max(i - width + 1, 0);
+            while (!exponent.testBit(j)) {
+                j++;
+            }
+            int window = 0;
+            for (int l = i; l >= j; l--) {
+                window = (window << 1) | (exponent.testBit(l) ? 1 : 0);
+                if (started) {
+                    multiply(acc, acc, acc, t);
+                }
+            }
+            if (started) {
+                multiply(acc, table[window >>> 1], acc, t);
+            } else {
+                System.arraycopy(table[window >>> 1], 0, acc, 0, k);
+                started = true;
+            }
+            i = j - 1;
+        }
+// out of Montgomery form: multiply by 1
+        multiply(acc, w.unit, out, t);
+    }
+    private static long unsignedMultiplyHigh(long a, long b) {
+        return Math.multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+    }
+}
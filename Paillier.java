@@ -1,6 +1,17 @@
 package Paillier;
+import Batch.Batch;
+import CiphertextFile.CiphertextFile;
+import KeyStore.KeyStore;
+import Metrics.Metrics;
+import Montgomery.Montgomery;
+import Randomness.Randomness;
+import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.file.Path;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 /**
  * @ClassName: Paillier
  * @Description: This is a sample java source code of Paillier
@@ -9,14 +20,20 @@ import java.security.SecureRandom;
 public class Paillier {
     /**
      * @ClassName: PublicKey
-     * @Description: This is a class for storing the public
-     * key (n, g) of Paillier PKE.
+     * @Description: This is an immutable class for storing the
+     * public key (n, g) of Paillier PKE. It also caches n^2 and
+     * whether g = n+1, so g^m mod n^2 can be taken in closed
+     * form as 1+m*n. It does not depend on a Paillier
+     * instance and can be built or loaded on its own.
      */
-    public class PublicKey {
-        private BigInteger n, g;
+    public static class PublicKey {
+        private final BigInteger n, g, nsquare;
+        private final boolean gIsNPlusOne;
         public PublicKey(BigInteger n, BigInteger g) {
             this.n = n;
             this.g = g;
+            this.nsquare = n.multiply(n);
+            this.gIsNPlusOne = g.equals(n.add(BigInteger.ONE));
         }
         public BigInteger getN() {
             return n;
@@ -24,26 +41,125 @@ public class Paillier {
         public BigInteger getG() {
             return g;
         }
+        public BigInteger getNSquare() {
+            return nsquare;
+        }
+        /**
+         * @Title: getFingerprint
+         * @Description: This function returns the SHA-256
+         * fingerprint of (n, g), which tags ciphertext files
+         * written under this key.
+         * @return byte[] The key fingerprint.
+         */
+        public byte[] getFingerprint() {
+            return CiphertextFile.fingerprint(n, g);
+        }
+        /**
+         * @Title: gPow
+         * @Description: This function returns g^m mod n^2,
+         * using 1+m*n when g = n+1.
+         * @param m
+         * The exponent, in Z_n.
+         * @return BigInteger g^m mod n^2.
+         */
+        public BigInteger gPow(BigInteger m) {
+            if (gIsNPlusOne) {
+                return m.multiply(n).add(BigInteger.ONE).mod(nsquare);
+            }
+            return g.modPow(m, nsquare);
+        }
     }
     /**
      * @ClassName: PrivateKey
      * @Description: This is a class for storing the private
-     * key (lambda, mu) of Paillier PKE.
+     * key (lambda, mu) of Paillier PKE. When the prime factors
+     * (p, q) are known, it also keeps the CRT constants
+     * (p^2, q^2, hp, hq, p^{-1} mod q) used by decryptCRT.
+     * It does not depend on a Paillier instance and can be
+     * built or loaded on its own.
      */
-    public class PrivateKey {
+    public static class PrivateKey {
         private BigInteger lambda, mu;
+        private BigInteger p, q, psquare, qsquare, hp, hq, pinv;
         public PrivateKey(BigInteger lambda, BigInteger mu) {
             this.lambda = lambda;
             this.mu = mu;
         }
+        public PrivateKey(BigInteger lambda, BigInteger mu,
+                          BigInteger p, BigInteger q, BigInteger g) {
+            this(lambda, mu);
+            this.p = p;
+            this.q = q;
+            this.psquare = p.multiply(p);
+            this.qsquare = q.multiply(q);
+// hp = (L_p(g^(p-1) mod p^2))^{-1} mod p
+            this.hp = Lfunction(g.mod(psquare).modPow(
+                    p.subtract(BigInteger.ONE), psquare), p).modInverse(p);
+// hq = (L_q(g^(q-1) mod q^2))^{-1} mod q
+            this.hq = Lfunction(g.mod(qsquare).modPow(
+                    q.subtract(BigInteger.ONE), qsquare), q).modInverse(q);
+            this.pinv = p.modInverse(q);
+        }
+        public PrivateKey(BigInteger lambda, BigInteger mu,
+                          BigInteger p, BigInteger q, BigInteger hp,
+                          BigInteger hq, BigInteger pinv) {
+            this(lambda, mu);
+            this.p = p;
+            this.q = q;
+            this.psquare = p.multiply(p);
+            this.qsquare = q.multiply(q);
+            this.hp = hp;
+            this.hq = hq;
+            this.pinv = pinv;
+        }
         public BigInteger getLambda() {
             return lambda;
         }
         public BigInteger getMu() {
             return mu;
         }
+        public BigInteger getP() {
+            return p;
+        }
+        public BigInteger getQ() {
+            return q;
+        }
+        public boolean hasFactors() {
+            return p != null && q != null;
+        }
+    }
+    /**
+     * @ClassName: Validation
+     * @Description: The policy for checking that plaintexts are
+     * in Z*_n and ciphertexts in Z*_(n^2). Ranges are always
+     * checked; the policy decides the gcd with n.
+     *
+     * STRICT: every encrypt and decrypt runs the gcd.
+     * NONE: no gcd, for trusted ciphertexts produced in-process.
+     * BATCHED: single calls still run the gcd; the batch encrypt
+     * and decrypt instead check the whole vector with one
+     * product tree before starting, reporting every offending
+     * index, and skip the per-item gcd.
+     */
+    public enum Validation {
+        STRICT, NONE, BATCHED
     }
     private final int CERTAINTY = 64;
+    private static final int MULTIEXP_CHUNK = 2048; // Items per weightedSum chunk
+    private static final Metrics.Timer KEYGEN_TIMER = Metrics.timer("Paillier.keyGeneration");
+    private static final Metrics.Timer ENCRYPT_TIMER = Metrics.timer("Paillier.encrypt");
+    private static final Metrics.Timer DECRYPT_TIMER = Metrics.timer("Paillier.decrypt");
+    private static final Metrics.Timer DECRYPT_CRT_TIMER = Metrics.timer("Paillier.decryptCRT");
+    private static final Metrics.Timer ENCRYPT_BATCH_TIMER = Metrics.timer("Paillier.encryptBatch");
+    private static final Metrics.Timer DECRYPT_BATCH_TIMER = Metrics.timer("Paillier.decryptBatch");
+    private static final Metrics.Timer ADD_TIMER = Metrics.timer("Paillier.add");
+    private static final Metrics.Timer MUL_TIMER = Metrics.timer("Paillier.mul");
+    private static final Metrics.Timer WEIGHTED_SUM_TIMER = Metrics.timer("Paillier.weightedSum");
+    private static final Metrics.Timer SELF_BLIND_TIMER = Metrics.timer("Paillier.selfBlind");
+    private static final Metrics.Counter PLAINTEXT_REJECTED = Metrics.counter("Paillier.belongToZStarN.rejected");
+    private static final Metrics.Counter CIPHERTEXT_REJECTED = Metrics.counter("Paillier.belongToZStarNSquare.rejected");
+    private static volatile Montgomery.Arithmetic arithmetic = Montgomery.defaultArithmetic();
+    private static volatile Validation validation = Validation.STRICT;
     private PublicKey pubkey; // The public key of Paillier PKE, (n, g)
     private PrivateKey prikey; // The private key of Paillier PKE, (lambda, mu)
     /**
@@ -66,31 +182,72 @@ public class Paillier {
     public PrivateKey getPrikey() {
         return prikey;
     }
+    /**
+     * @Title: useArithmetic
+     * @Description: This function plugs in the backend of the
+     * exponentiations in encrypt, decrypt, decryptCRT, mul and
+     * selfBlind, Montgomery.BIGINTEGER or Montgomery.ENGINE.
+     * Both give the same ciphertexts and plaintexts.
+     * @param backend
+     * The modular exponentiation backend.
+     */
+    public static void useArithmetic(Montgomery.Arithmetic backend) {
+        arithmetic = backend;
+    }
+    /**
+     * @Title: useValidation
+     * @Description: This function sets the validation policy
+     * of encrypt and decrypt, STRICT by default.
+     * @param policy
+     * The validation policy.
+     */
+    public static void useValidation(Validation policy) {
+        validation = policy;
+    }
+    public static Validation getValidation() {
+        return validation;
+    }
     /**
      * @Title: keyGeneration
      * @Description: This function is to help generate the
      * public key and
-     * private key for encryption and decryption.
+     * private key for encryption and decryption, searching
+     * for the safe primes on all cores.
      * @param k
      * k is the security parameter, which decides
      * the length of two large primes (p and q).
      * @return void
      */
     public void keyGeneration(int k) {
+        keyGeneration(k, Runtime.getRuntime().availableProcessors());
+    }
+    /**
+     * @Title: keyGeneration
+     * @Description: This function is to help generate the
+     * public key and
+     * private key for encryption and decryption. The safe
+     * primes p = 2p'+1 and q = 2q'+1 come from the sieved
+     * parallel search of PaillierPrimeGenerator.
+     * @param k
+     * k is the security parameter, which decides
+     * the length of two large primes (p and q).
+     * @param threads
+     * The number of threads searching for each prime.
+     * @return void
+     */
+    public void keyGeneration(int k, int threads) {
+        long start = KEYGEN_TIMER.start();
         BigInteger p_prime, q_prime, p, q;
+        p_prime = PaillierPrimeGenerator.sophieGermainPrime(k, CERTAINTY,
+                threads);
+        p = (p_prime.multiply(BigInteger.valueOf(2)))
+                .add(BigInteger.ONE);
         do {
-            p_prime = new BigInteger(k, CERTAINTY,
-                    new SecureRandom());
-            p = (p_prime.multiply(BigInteger.valueOf(2)))
-                    .add(BigInteger.ONE);
-        } while (!p.isProbablePrime(CERTAINTY));
-        do {
-            do {
-                q_prime = new BigInteger(k, CERTAINTY,new SecureRandom());
-            } while (p_prime.compareTo(q_prime) == 0);
-            q = (q_prime.multiply(BigInteger.valueOf(2)))
-                    .add(BigInteger.ONE);
-        } while (!q.isProbablePrime(CERTAINTY));
+            q_prime = PaillierPrimeGenerator.sophieGermainPrime(k, CERTAINTY,
+                    threads);
+        } while (p_prime.compareTo(q_prime) == 0);
+        q = (q_prime.multiply(BigInteger.valueOf(2)))
+                .add(BigInteger.ONE);
 // The following steps are to generate the keys
 // n=p*q
         BigInteger n = p.multiply(q);
@@ -106,7 +263,62 @@ public class Paillier {
         BigInteger mu = Lfunction(g.modPow(lambda, nsquare), n)
                 .modInverse(n);
         pubkey = new PublicKey(n, g);
-        prikey = new PrivateKey(lambda, mu);
+        prikey = new PrivateKey(lambda, mu, p, q, g);
+        KEYGEN_TIMER.stop(start);
+    }
+    /**
+     * @Title: saveKeys
+     * @Description: This function writes the key pair to a
+     * key store file, together with the CRT constants, so
+     * loadKeys needs no exponentiation.
+     * @param path
+     * The key store file.
+     * @throws IOException
+     * If the file cannot be written, there is an exception.
+     */
+    public void saveKeys(Path path) throws IOException {
+        KeyStore store = new KeyStore("Paillier");
+        store.putBigInteger("n", pubkey.getN());
+        store.putBigInteger("g", pubkey.getG());
+        if (prikey != null) {
+            store.putBigInteger("lambda", prikey.getLambda());
+            store.putBigInteger("mu", prikey.getMu());
+            if (prikey.hasFactors()) {
+                store.putBigInteger("p", prikey.p);
+                store.putBigInteger("q", prikey.q);
+                store.putBigInteger("hp", prikey.hp);
+                store.putBigInteger("hq", prikey.hq);
+                store.putBigInteger("pinv", prikey.pinv);
+            }
+        }
+        store.write(path);
+    }
+    /**
+     * @Title: loadKeys
+     * @Description: This function reads a key pair written by
+     * saveKeys, replacing keyGeneration at start-up. The
+     * private key is null if the store holds only a public key.
+     * @param path
+     * The key store file.
+     * @throws IOException
+     * If the file is not a Paillier key store, there is an
+     * exception.
+     */
+    public void loadKeys(Path path) throws IOException {
+        KeyStore store = KeyStore.read(path, "Paillier");
+        pubkey = new PublicKey(store.getBigInteger("n"),
+                store.getBigInteger("g"));
+        if (!store.has("lambda")) {
+            prikey = null;
+        } else if (store.has("p")) {
+            prikey = new PrivateKey(store.getBigInteger("lambda"),
+                    store.getBigInteger("mu"), store.getBigInteger("p"),
+                    store.getBigInteger("q"), store.getBigInteger("hp"),
+                    store.getBigInteger("hq"), store.getBigInteger("pinv"));
+        } else {
+            prikey = new PrivateKey(store.getBigInteger("lambda"),
+                    store.getBigInteger("mu"));
+        }
     }
     /**
      * @Title: encrypt
@@ -123,16 +335,48 @@ public class Paillier {
      */
     public static BigInteger encrypt(BigInteger m,
                                      PublicKey pubkey) throws Exception {
+        return encryptItem(m, pubkey, validation != Validation.NONE);
+    }
+// gcd: whether to run the gcd with n, false when the batch has checked it already
+    private static BigInteger encryptItem(BigInteger m, PublicKey pubkey,
+                                          boolean gcd) throws Exception {
+        long start = ENCRYPT_TIMER.start();
         BigInteger n = pubkey.getN();
-        BigInteger nsquare = n.pow(2);
-        BigInteger g = pubkey.getG();
-        if (!belongToZStarN(m, n)) {
+        BigInteger nsquare = pubkey.getNSquare();
+        if (!belongToZStarN(m, n, gcd)) {
             throw new Exception(
                     "Paillier.encrypt(BigInteger m, PublicKey pubkey): plaintext m is not in Z*_n");
         }
         BigInteger r = randomZStarN(n);
-        return (g.modPow(m, nsquare).multiply(r.modPow(n,
-                nsquare))).mod(nsquare);
+        return ENCRYPT_TIMER.stop(start, (pubkey.gPow(m).multiply(arithmetic.modPow(r,
+                n, nsquare))).mod(nsquare));
+    }
+    /**
+     * @Title: encrypt
+     * @Description: This function is to encrypt the message
+     * with Paillier's public key, taking the noise r^n mod n^2
+     * from a precomputed pool.
+     * @param m
+     * The message.
+     * @param pool
+     * The noise pool built for the public key.
+     * @return BigInteger The ciphertext.
+     * @throws Exception
+     * If the message is not in Z*_n, or the pool cannot
+     * supply a noise value, there is an exception.
+     */
+    public static BigInteger encrypt(BigInteger m,
+                                     PaillierNoisePool pool) throws Exception {
+        long start = ENCRYPT_TIMER.start();
+        PublicKey pubkey = pool.getPubkey();
+        BigInteger n = pubkey.getN();
+        BigInteger nsquare = pubkey.getNSquare();
+        if (!belongToZStarN(m, n, validation != Validation.NONE)) {
+            throw new Exception(
+                    "Paillier.encrypt(BigInteger m, PaillierNoisePool pool): plaintext m is not in Z*_n");
+        }
+        return ENCRYPT_TIMER.stop(start,
+                pubkey.gPow(m).multiply(pool.draw()).mod(nsquare));
     }/**
      * @Title: decrypt
      * @Description: This function is to decrypt the ciphertext
@@ -150,16 +394,192 @@ public class Paillier {
      */
     public static BigInteger decrypt(BigInteger c, PublicKey
             pubkey, PrivateKey prikey) throws Exception {
+        return decryptItem(c, pubkey, prikey, validation != Validation.NONE);
+    }
+    private static BigInteger decryptItem(BigInteger c, PublicKey pubkey,
+                                          PrivateKey prikey, boolean gcd) throws Exception {
+        long start = DECRYPT_TIMER.start();
         BigInteger n = pubkey.getN();
-        BigInteger nsquare = n.pow(2);
-        BigInteger lambda = prikey.getLambda();
-        BigInteger mu = prikey.getMu();
-        if (!belongToZStarNSquare(c, nsquare)) {
+        BigInteger nsquare = pubkey.getNSquare();
+        if (!belongToZStarNSquare(c, n, nsquare, gcd)) {
             throw new Exception(
                     "Paillier.decrypt(BigInteger c, PrivateKey prikey): ciphertext c is not in Z*_(n^2)");
         }
-        return Lfunction(c.modPow(lambda, nsquare), n).
-                multiply(mu).mod(n);
+        return DECRYPT_TIMER.stop(start, plain(c, pubkey, prikey));
+    }
+// the decryption of a ciphertext already checked to be in Z*_(n^2), m = L(c^lambda mod n^2) * mu mod n
+    static BigInteger plain(BigInteger c, PublicKey pubkey, PrivateKey prikey) {
+        BigInteger n = pubkey.getN();
+        return Lfunction(arithmetic.modPow(c, prikey.getLambda(),
+                pubkey.getNSquare()), n).multiply(prikey.getMu()).mod(n);
+    }
+    /**
+     * @Title: decryptCRT
+     * @Description: This function is to decrypt the ciphertext
+     * with the prime factors kept in the private key. It
+     * exponentiates modulo p^2 and q^2 separately and recombines
+     * the two halves with the Chinese Remainder Theorem, which
+     * is about 3-4 times faster than decrypt.
+     * @param c
+     * The ciphertext.
+     * @param pubkey
+     * The public key of Paillier PKE.
+     * @param prikey
+     * The private key of Paillier PKE, holding p and q.
+     * @return BigInteger The plaintext.
+     * @throws Exception
+     * If the cipher is not in Z*_(n^2), or the private key
+     * has no prime factors, there is an exception.
+     */
+    public static BigInteger decryptCRT(BigInteger c, PublicKey
+            pubkey, PrivateKey prikey) throws Exception {
+        return decryptCRTItem(c, pubkey, prikey, validation != Validation.NONE);
+    }
+    private static BigInteger decryptCRTItem(BigInteger c, PublicKey pubkey,
+                                             PrivateKey prikey, boolean gcd) throws Exception {
+        long start = DECRYPT_CRT_TIMER.start();
+        BigInteger n = pubkey.getN();
+        BigInteger nsquare = pubkey.getNSquare();
+        if (!prikey.hasFactors()) {
+            throw new Exception(
+                    "Paillier.decryptCRT(BigInteger c, PrivateKey prikey): private key has no prime factors");
+        }
+        if (!belongToZStarNSquare(c, n, nsquare, gcd)) {
+            throw new Exception(
+                    "Paillier.decryptCRT(BigInteger c, PrivateKey prikey): ciphertext c is not in Z*_(n^2)");
+        }
+        return DECRYPT_CRT_TIMER.stop(start, crt(c, prikey));
+    }
+// the CRT decryption of a ciphertext already checked to be in Z*_(n^2)
+    static BigInteger crt(BigInteger c, PrivateKey prikey) {
+        BigInteger p = prikey.p;
+        BigInteger q = prikey.q;
+// mp = L_p(c^(p-1) mod p^2) * hp mod p
+        BigInteger mp = Lfunction(arithmetic.modPow(c.mod(prikey.psquare),
+                p.subtract(BigInteger.ONE), prikey.psquare), p)
+                .multiply(prikey.hp).mod(p);
+// mq = L_q(c^(q-1) mod q^2) * hq mod q
+        BigInteger mq = Lfunction(arithmetic.modPow(c.mod(prikey.qsquare),
+                q.subtract(BigInteger.ONE), prikey.qsquare), q)
+                .multiply(prikey.hq).mod(q);
+// m = mp + p * ((mq - mp) * p^{-1} mod q)
+        return mq.subtract(mp).multiply(prikey.pinv).mod(q).multiply(p).add(mp);
+    }
+    /**
+     * @Title: encrypt
+     * @Description: This function is to encrypt a batch of
+     * messages in parallel on the common fork/join pool. The
+     * ciphertexts keep the order of the messages.
+     * @param ms
+     * The messages.
+     * @param pubkey
+     * The public key of Paillier PKE.
+     * @return BigInteger[] The ciphertexts.
+     * @throws Exception
+     * If any message is not in Z*_n, there is an exception.
+     */
+    public static BigInteger[] encrypt(BigInteger[] ms,
+                                       PublicKey pubkey) throws Exception {
+        return encrypt(ms, pubkey, 0);
+    }
+    /**
+     * @Title: encrypt
+     * @Description: This function is to encrypt a batch of
+     * messages in parallel with at most parallelism threads.
+     * @param ms
+     * The messages.
+     * @param pubkey
+     * The public key of Paillier PKE.
+     * @param parallelism
+     * The maximum number of worker threads, or 0 to use the
+     * common fork/join pool.
+     * @return BigInteger[] The ciphertexts.
+     * @throws Exception
+     * If any message is not in Z*_n, there is an exception.
+     */
+    public static BigInteger[] encrypt(BigInteger[] ms,
+                                       PublicKey pubkey, int parallelism) throws Exception {
+        long start = ENCRYPT_BATCH_TIMER.start();
+        if (validation == Validation.BATCHED) {
+            int[] invalid = findInvalid(ms, pubkey.getN(), pubkey.getN());
+            if (invalid.length > 0) {
+                throw new Exception(
+                        "Paillier.encrypt(BigInteger[] ms, PublicKey pubkey): plaintexts at "
+                        + Arrays.toString(invalid) + " are not in Z*_n");
+            }
+        }
+        boolean gcd = validation == Validation.STRICT;
+        BigInteger[] cs = new BigInteger[ms.length];
+        Batch.run(ms.length, parallelism,
+                i -> cs[i] = encryptItem(ms[i], pubkey, gcd));
+        return ENCRYPT_BATCH_TIMER.stop(start, cs);
+    }
+    public static BigInteger[] encrypt(List<BigInteger> ms,
+                                       PublicKey pubkey, int parallelism) throws Exception {
+        return encrypt(ms.toArray(new BigInteger[0]), pubkey, parallelism);
+    }
+    /**
+     * @Title: decrypt
+     * @Description: This function is to decrypt a batch of
+     * ciphertexts in parallel on the common fork/join pool,
+     * using decryptCRT when the private key holds p and q.
+     * The plaintexts keep the order of the ciphertexts.
+     * @param cs
+     * The ciphertexts.
+     * @param pubkey
+     * The public key of Paillier PKE.
+     * @param prikey
+     * The private key of Paillier PKE.
+     * @return BigInteger[] The plaintexts.
+     * @throws Exception
+     * If any cipher is not in Z*_(n^2), there is an
+     * exception.
+     */
+    public static BigInteger[] decrypt(BigInteger[] cs, PublicKey
+            pubkey, PrivateKey prikey) throws Exception {
+        return decrypt(cs, pubkey, prikey, 0);
+    }
+    /**
+     * @Title: decrypt
+     * @Description: This function is to decrypt a batch of
+     * ciphertexts in parallel with at most parallelism threads.
+     * @param cs
+     * The ciphertexts.
+     * @param pubkey
+     * The public key of Paillier PKE.
+     * @param prikey
+     * The private key of Paillier PKE.
+     * @param parallelism
+     * The maximum number of worker threads, or 0 to use the
+     * common fork/join pool.
+     * @return BigInteger[] The plaintexts.
+     * @throws Exception
+     * If any cipher is not in Z*_(n^2), there is an
+     * exception.
+     */
+    public static BigInteger[] decrypt(BigInteger[] cs, PublicKey
+            pubkey, PrivateKey prikey, int parallelism) throws Exception {
+        long start = DECRYPT_BATCH_TIMER.start();
+        if (validation == Validation.BATCHED) {
+            int[] invalid = findInvalid(cs, pubkey.getNSquare(), pubkey.getN());
+            if (invalid.length > 0) {
+                throw new Exception(
+                        "Paillier.decrypt(BigInteger[] cs, PrivateKey prikey): ciphertexts at "
+                        + Arrays.toString(invalid) + " are not in Z*_(n^2)");
+            }
+        }
+        BigInteger[] ms = new BigInteger[cs.length];
+        boolean crt = prikey.hasFactors();
+        boolean gcd = validation == Validation.STRICT;
+        Batch.run(cs.length, parallelism, i -> ms[i] = crt
+                ? decryptCRTItem(cs[i], pubkey, prikey, gcd)
+                : decryptItem(cs[i], pubkey, prikey, gcd));
+        return DECRYPT_BATCH_TIMER.stop(start, ms);
+    }
+    public static BigInteger[] decrypt(List<BigInteger> cs, PublicKey
+            pubkey, PrivateKey prikey, int parallelism) throws Exception {
+        return decrypt(cs.toArray(new BigInteger[0]), pubkey, prikey,
+                parallelism);
     }
     /**
      * @Title: add
@@ -174,8 +594,10 @@ public class Paillier {
      * @return BigInteger The return value is c1*c2 mod n^2.
      */
     public static BigInteger add(BigInteger c1, BigInteger c2,
-                                 PublicKey pubkey) {BigInteger nsquare = pubkey.getN()
-            .pow(2);return c1.multiply(c2).mod(nsquare);
+                                 PublicKey pubkey) {
+        long start = ADD_TIMER.start();
+        BigInteger nsquare = pubkey.getNSquare();
+        return ADD_TIMER.stop(start, c1.multiply(c2).mod(nsquare));
     }
     /**
      * @Title: mul
@@ -190,9 +612,76 @@ public class Paillier {
      * @return BigInteger The return value is c^m mod n^2.
      */
     public static BigInteger mul(BigInteger c, BigInteger m,
-                                 PublicKey pubkey) {BigInteger nsquare =
-            pubkey.getN().pow(2);
-        return c.modPow(m, nsquare);
+                                 PublicKey pubkey) {
+        long start = MUL_TIMER.start();
+        BigInteger nsquare = pubkey.getNSquare();
+        return MUL_TIMER.stop(start, arithmetic.modPow(c, m, nsquare));
+    }
+    /**
+     * @Title: weightedSum
+     * @Description: The function supports the homomorphic
+     * weighted sum sum w_i*m_i of a ciphertext vector, computed
+     * as prod c_i^{w_i} mod n^2 by simultaneous
+     * multi-exponentiation on the common fork/join pool.
+     * @param cs
+     * The ciphertexts.
+     * @param ws
+     * The plaintext weights, reduced mod n.
+     * @param pubkey
+     * The public key of Paillier PKE.
+     * @return BigInteger The return value is prod c_i^{w_i} mod n^2.
+     * @throws Exception
+     * If the vectors differ in length, there is an exception.
+     */
+    public static BigInteger weightedSum(BigInteger[] cs,
+                                         BigInteger[] ws, PublicKey pubkey) throws Exception {
+        return weightedSum(cs, ws, pubkey, 0);
+    }
+    /**
+     * @Title: weightedSum
+     * @Description: The function supports the homomorphic
+     * weighted sum with at most parallelism threads. The vector
+     * is cut into chunks of MULTIEXP_CHUNK items, each chunk is
+     * multi-exponentiated on its own and the partial products
+     * are multiplied together.
+     * @param cs
+     * The ciphertexts.
+     * @param ws
+     * The plaintext weights, reduced mod n.
+     * @param pubkey
+     * The public key of Paillier PKE.
+     * @param parallelism
+     * The maximum number of worker threads, or 0 to use the
+     * common fork/join pool.
+     * @return BigInteger The return value is prod c_i^{w_i} mod n^2.
+     * @throws Exception
+     * If the vectors differ in length, there is an exception.
+     */
+    public static BigInteger weightedSum(BigInteger[] cs,
+                                         BigInteger[] ws, PublicKey pubkey, int parallelism)
+            throws Exception {
+        if (cs.length != ws.length) {
+            throw new Exception(
+                    "Paillier.weightedSum(BigInteger[] cs, BigInteger[] ws, PublicKey pubkey): cs and ws differ in length");
+        }
+        long start = WEIGHTED_SUM_TIMER.start();
+        BigInteger n = pubkey.getN();
+        BigInteger nsquare = pubkey.getNSquare();
+        BigInteger[] exps = new BigInteger[ws.length];
+        for (int i = 0; i < ws.length; i++) {
+            exps[i] = ws[i].mod(n);
+        }
+        int chunks = (cs.length + MULTIEXP_CHUNK - 1) / MULTIEXP_CHUNK;
+        BigInteger[] partials = new BigInteger[chunks];
+        Batch.run(chunks, parallelism, i -> partials[i] =
+                PaillierMultiExp.multiExp(cs, exps, i * MULTIEXP_CHUNK,
+                        Math.min(cs.length, (i + 1) * MULTIEXP_CHUNK),
+                        nsquare));
+        BigInteger result = BigInteger.ONE;
+        for (BigInteger partial : partials) {
+            result = result.multiply(partial).mod(nsquare);
+        }
+        return WEIGHTED_SUM_TIMER.stop(start, result);
     }
     /**
      * @Title: selfBlind
@@ -208,9 +697,32 @@ public class Paillier {
      */
     public static BigInteger selfBlind(BigInteger c,
                                        BigInteger r, PublicKey pubkey) {
+        long start = SELF_BLIND_TIMER.start();
         BigInteger n = pubkey.getN();
-        BigInteger nsquare = n.pow(2);
-        return c.multiply(r.modPow(n, nsquare)).mod(nsquare);
+        BigInteger nsquare = pubkey.getNSquare();
+        return SELF_BLIND_TIMER.stop(start,
+                c.multiply(arithmetic.modPow(r, n, nsquare)).mod(nsquare));
+    }
+    /**
+     * @Title: selfBlind
+     * @Description: The function supports the homomorphic
+     * self-blinding with one ciphertext and one noise value
+     * taken from a precomputed pool.
+     * @param c
+     * The ciphertext.
+     * @param pool
+     * The noise pool built for the public key.
+     * @return BigInteger The return value is c*r^n mod n^2.
+     * @throws Exception
+     * If the pool cannot supply a noise value, there is an
+     * exception.
+     */
+    public static BigInteger selfBlind(BigInteger c,
+                                       PaillierNoisePool pool) throws Exception {
+        long start = SELF_BLIND_TIMER.start();
+        BigInteger nsquare = pool.getPubkey().getNSquare();
+        return SELF_BLIND_TIMER.stop(start,
+                c.multiply(pool.draw()).mod(nsquare));
     }
 /**
  * @Title: Lfunction
@@ -235,13 +747,7 @@ private static BigInteger Lfunction(BigInteger mu,
      * @return BigInteger A random number in Z*_n.
      */
     public static BigInteger randomZStarN(BigInteger n) {
-        BigInteger r;
-        do {
-            r = new BigInteger(n.bitLength(), new
-                    SecureRandom());
-        } while (r.compareTo(n) >= 0 || r.gcd(n).intValue()
-                != 1);
-        return r;
+        return Randomness.randomZStarN(n);
     }
     /**
      *
@@ -252,14 +758,17 @@ private static BigInteger Lfunction(BigInteger mu,
      * The plaintext.
      * @param n
      * n=p*q.
+     * @param gcd
+     * Whether to check gcd(m, n) = 1 besides the range.
      * @return boolean If it is true, the plaintext is Z*_n,
      * otherwise, not.
      */
     private static boolean belongToZStarN(BigInteger m,
-                                          BigInteger n) {
+                                          BigInteger n, boolean gcd) {
         if (m.compareTo(BigInteger.ZERO) < 0 ||
                 m.compareTo(n) >= 0
-                || m.gcd(n).intValue() != 1) {
+                || gcd && !m.gcd(n).equals(BigInteger.ONE)) {
+            PLAINTEXT_REJECTED.increment();
             return false;
         }
         return true;
@@ -269,23 +778,104 @@ private static BigInteger Lfunction(BigInteger mu,
  * @Title: belongToZStarNSquare
  * @Description: This function is to test whether the
  * ciphertext is in
- * Z*_(n^2).
+ * Z*_(n^2). c is a unit mod n^2 exactly when it is one mod n,
+ * so the gcd is taken with n, at half the width.
  * @param c
  * The ciphertext.
+ * @param n
+ * n=p*q.
  * @param nsquare
  * nsquare=n^2.
+ * @param gcd
+ * Whether to check gcd(c, n) = 1 besides the range.
  * @return boolean If it is true, the ciphertext is
  * Z*_(n^2), otherwise, not.
  */
 private static boolean belongToZStarNSquare(BigInteger c,
-                                            BigInteger nsquare){
+                                            BigInteger n, BigInteger nsquare, boolean gcd){
     if (c.compareTo(BigInteger.ZERO) < 0 ||
             c.compareTo(nsquare) >= 0
-            || c.gcd(nsquare).intValue() != 1) {
+            || gcd && !c.gcd(n).equals(BigInteger.ONE)) {
+        CIPHERTEXT_REJECTED.increment();
         return false;
     }
     return true;
 }
+    /**
+     * @Title: findInvalid
+     * @Description: This function checks a vector against n in
+     * one pass, batch-GCD style. It builds a product tree of
+     * the items mod n, and since a product is a unit mod n
+     * exactly when all its factors are, a single gcd at the root
+     * clears a valid vector; otherwise only the subtrees whose
+     * gcd with n is not 1 are descended to find the offenders.
+     * A valid vector costs one modular multiplication per item
+     * and one gcd instead of one gcd per item.
+     * @param xs
+     * The plaintexts or ciphertexts.
+     * @param bound
+     * The range bound, n for plaintexts and n^2 for
+     * ciphertexts.
+     * @param n
+     * n=p*q.
+     * @return int[] The ascending indices of the items not in
+     * [0, bound) or not coprime with n.
+     */
+    public static int[] findInvalid(BigInteger[] xs, BigInteger bound,
+                                    BigInteger n) {
+        if (xs.length == 0) {
+            return new int[0];
+        }
+        boolean[] invalid = new boolean[xs.length];
+        List<BigInteger[]> tree = new ArrayList<BigInteger[]>();
+        BigInteger[] level = new BigInteger[xs.length];
+        for (int i = 0; i < xs.length; i++) {
+            if (xs[i].signum() < 0 || xs[i].compareTo(bound) >= 0) {
+                invalid[i] = true;
+                level[i] = BigInteger.ONE;
+            } else {
+                level[i] = xs[i].mod(n);
+            }
+        }
+        tree.add(level);
+        while (level.length > 1) {
+            BigInteger[] below = level;
+            level = new BigInteger[(below.length + 1) / 2];
+            for (int j = 0; j < level.length; j++) {
+                level[j] = 2 * j + 1 < below.length
+                        ? below[2 * j].multiply(below[2 * j + 1]).mod(n)
+                        : below[2 * j];
+            }
+            tree.add(level);
+        }
+        descend(tree, tree.size() - 1, 0, n, invalid);
+        int count = 0;
+        for (boolean b : invalid) {
+            count += b ? 1 : 0;
+        }
+        int[] indices = new int[count];
+        for (int i = 0, j = 0; i < invalid.length; i++) {
+            if (invalid[i]) {
+                indices[j++] = i;
+                (bound.equals(n) ? PLAINTEXT_REJECTED : CIPHERTEXT_REJECTED).increment();
+            }
+        }
+        return indices;
+    }
+    private static void descend(List<BigInteger[]> tree, int depth, int index,
+                                BigInteger n, boolean[] invalid) {
+        if (tree.get(depth)[index].gcd(n).equals(BigInteger.ONE)) {
+            return;
+        }
+        if (depth == 0) {
+            invalid[index] = true;
+            return;
+        }
+        descend(tree, depth - 1, 2 * index, n, invalid);
+        if (2 * index + 1 < tree.get(depth - 1).length) {
+            descend(tree, depth - 1, 2 * index + 1, n, invalid);
+        }
+    }
     public static void main(String[] args) {
         Paillier paillier = new Paillier();
 // KeyGeneration
@@ -306,6 +896,14 @@ private static boolean belongToZStarNSquare(BigInteger c,
         if (decrypted_m.compareTo(m) == 0) {
             System.out.println("Encryption and Decryption test successfully.");
         }
+// CRT Decryption
+        try {
+            if (Paillier.decryptCRT(c, pubkey, prikey).compareTo(m) == 0) {
+                System.out.println("CRT Decryption test successfully.");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
 // Homomorphic Properties
 // Addition
         BigInteger m1 = new BigInteger("12345");
@@ -353,5 +951,387 @@ private static boolean belongToZStarNSquare(BigInteger c,
         } catch (Exception e) {
             e.printStackTrace();
         }
+// Batch Encryption and Decryption
+        try {
+            BigInteger[] ms = new BigInteger[64];
+            for (int i = 0; i < ms.length; i++) {
+                ms[i] = BigInteger.valueOf(i + 1);
+            }
+            BigInteger[] decrypted_ms = Paillier.decrypt(
+                    Paillier.encrypt(ms, pubkey), pubkey, prikey, 2);
+            if (java.util.Arrays.equals(ms, decrypted_ms)) {
+                System.out.println("Batch encryption and decryption tests successfully.");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+// Weighted Sum
+        try {
+            int size = 4096;
+            BigInteger[] ms = new BigInteger[size];
+            BigInteger[] ws = new BigInteger[size];
+            BigInteger expected = BigInteger.ZERO;
+            SecureRandom random = Randomness.get();
+            for (int i = 0; i < size; i++) {
+                ms[i] = BigInteger.valueOf(random.nextInt(1 << 16) + 1);
+                ws[i] = BigInteger.valueOf(random.nextInt(1 << 16) + 1);
+                expected = expected.add(ms[i].multiply(ws[i]));
+            }
+            BigInteger[] cs = Paillier.encrypt(ms, pubkey);
+            BigInteger naive = Paillier.mul(cs[0], ws[0], pubkey);
+            for (int i = 1; i < size; i++) {
+                naive = Paillier.add(naive, Paillier.mul(cs[i], ws[i],
+                        pubkey), pubkey);
+            }
+            BigInteger fast = Paillier.weightedSum(cs, ws, pubkey, 1);
+            if (Paillier.decrypt(fast, pubkey, prikey).compareTo(expected) == 0
+                    && Paillier.decrypt(naive, pubkey, prikey).compareTo(expected) == 0) {
+                System.out.println("Homomorphic weighted sum tests successfully.");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+// Plaintext Packing
+        try {
+            PaillierPacking packing = new PaillierPacking(pubkey, 32, 8);
+            long[] v1 = new long[packing.getSlots()];
+            long[] v2 = new long[packing.getSlots()];
+            long[] expected = new long[packing.getSlots()];
+            for (int i = 0; i < v1.length; i++) {
+                v1[i] = i * 1000L;
+                v2[i] = 0xFFFFFFFFL - i;
+                expected[i] = (v1[i] + v2[i]) * 3;
+            }
+            PaillierPacking.PackedCiphertext sum = packing.mul(packing.add(
+                    packing.encrypt(v1), packing.encrypt(v2)), 3);
+            if (java.util.Arrays.equals(packing.decrypt(sum, prikey), expected)) {
+                System.out.println("Packed addition and multiplication tests successfully, "
+                        + packing.getSlots() + " slots, "
+                        + packing.safeAdditions(sum) + " safe additions left.");
+            }
+            PaillierPacking other = new PaillierPacking(pubkey, 16, 8);
+            try {
+                other.add(other.encrypt(new long[1]), sum);
+            } catch (Exception e) {
+                System.out.println("Packed ciphertexts of another codec are rejected.");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+// Ciphertext File
+        try {
+            java.nio.file.Path path = java.nio.file.Files.createTempFile(
+                    "paillier", ".hect");
+            BigInteger[] cs = new BigInteger[16];
+            try (CiphertextFile.Writer writer = new CiphertextFile.Writer(path,
+                    CiphertextFile.widthOf(pubkey.getNSquare()),
+                    pubkey.getFingerprint())) {
+                for (int i = 0; i < cs.length; i++) {
+                    cs[i] = Paillier.encrypt(BigInteger.valueOf(i + 1), pubkey);
+                    writer.write(cs[i]);
+                }
+            }
+            boolean same = true;
+            try (CiphertextFile.Reader reader = new CiphertextFile.Reader(path,
+                    pubkey.getFingerprint())) {
+                for (int i = 0; i < cs.length; i++) {
+                    same &= reader.getBigInteger(i).equals(cs[i]);
+                }
+                same &= reader.size() == cs.length;
+            }
+// a record length beyond the width, then a negative fingerprint length, are rejected
+            byte[] bytes = java.nio.file.Files.readAllBytes(path);
+            java.nio.ByteBuffer.wrap(bytes).putInt(24 + pubkey.getFingerprint().length,
+                    CiphertextFile.widthOf(pubkey.getNSquare()) + 1);
+            java.nio.file.Files.write(path, bytes);
+            try (CiphertextFile.Reader reader = new CiphertextFile.Reader(path)) {
+                reader.get(0);
+                same = false;
+            } catch (IOException e) {
+                same &= e.getMessage().startsWith("CiphertextFile.Reader.get: record 0");
+            }
+            java.nio.ByteBuffer.wrap(bytes).putInt(20, -1);
+            java.nio.file.Files.write(path, bytes);
+            try (CiphertextFile.Reader reader = new CiphertextFile.Reader(path)) {
+                reader.get(0);
+                same = false;
+            } catch (IOException e) {
+                same &= e.getMessage().startsWith(
+                        "CiphertextFile.Reader: invalid fingerprint length");
+            }
+            java.nio.file.Files.delete(path);
+            if (same) {
+                System.out.println("Ciphertext file tests successfully.");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+// Key Store
+        try {
+            java.nio.file.Path path = java.nio.file.Files.createTempFile(
+                    "paillier", ".keys");
+            paillier.saveKeys(path);
+            Paillier loaded = new Paillier();
+            loaded.loadKeys(path);
+// writeUTF encodes NUL and supplementary characters unlike UTF-8
+            String name = "n\u0000🔑";
+            KeyStore names = new KeyStore("Paillier");
+            names.putLong(name, 1);
+            names.write(path);
+            boolean named = KeyStore.read(path, "Paillier").getLong(name) == 1;
+            java.nio.file.Files.delete(path);
+            if (named && Paillier.decryptCRT(c, loaded.getPubkey(), loaded.getPrikey())
+                    .compareTo(m) == 0) {
+                System.out.println("Key store tests successfully.");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+// Noise Pool
+        try (PaillierNoisePool pool = new PaillierNoisePool(pubkey, 256,
+                64, 2, PaillierNoisePool.ExhaustedPolicy.COMPUTE)) {
+            Thread.sleep(500);
+            BigInteger c1 = Paillier.encrypt(m1, pool);
+            BigInteger c1blind = Paillier.selfBlind(c1, pool);
+            if (Paillier.decrypt(c1blind, pubkey, prikey).compareTo(m1) == 0) {
+                System.out.println("Noise pool encryption tests successfully, hit rate "
+                        + pool.getHitRate());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        try {
+            PaillierNoisePool pool = new PaillierNoisePool(pubkey, 4,
+                    1, 1, PaillierNoisePool.ExhaustedPolicy.BLOCK);
+            pool.close();
+            for (int i = 0; i < 8; i++) {
+                pool.draw(); // drains the pool, then computes instead of waiting forever
+            }
+            System.out.println("Noise pool draw after close tests successfully.");
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+// Seeded Randomness
+        try {
+            Randomness.useSeed(2024);
+            BigInteger c1 = Paillier.encrypt(m1, pubkey);
+            Randomness.useSeed(2024);
+            BigInteger c2 = Paillier.encrypt(m1, pubkey);
+            Randomness.useDrbg();
+            BigInteger c3 = Paillier.encrypt(m1, pubkey);
+            if (c1.equals(c2) && !c1.equals(c3)
+                    && Paillier.decrypt(c1, pubkey, prikey).compareTo(m1) == 0) {
+                System.out.println("Seeded randomness tests successfully.");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+// Metrics
+        try {
+            Metrics.setEnabled(true);
+            Metrics.reset();
+            BigInteger c1 = Paillier.encrypt(m1, pubkey);
+            Paillier.decryptCRT(c1, pubkey, prikey);
+            try {
+                Paillier.encrypt(pubkey.getN(), pubkey);
+            } catch (Exception expected) {
+            }
+            Metrics.setEnabled(false);
+            Paillier.encrypt(m1, pubkey);
+            javax.management.MBeanServer server = java.lang.management
+                    .ManagementFactory.getPlatformMBeanServer();
+            javax.management.ObjectName name =
+                    new javax.management.ObjectName(Metrics.OBJECT_NAME);
+            javax.management.openmbean.TabularData counts =
+                    (javax.management.openmbean.TabularData) server
+                            .getAttribute(name, "OperationCounts");
+            if (ENCRYPT_TIMER.getCount() == 1 && DECRYPT_CRT_TIMER.getCount() == 1
+                    && PLAINTEXT_REJECTED.getCount() == 1
+                    && counts.get(new Object[]{"Paillier.encrypt"}) != null) {
+                System.out.println("Metrics tests successfully, encrypt mean "
+                        + Math.round(ENCRYPT_TIMER.getMeanMicros()) + " us.");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+// Async Service
+        try (HomomorphicService.HomomorphicService service =
+                     new HomomorphicService.HomomorphicService(2, 64, 8,
+                             java.util.concurrent.ForkJoinPool.commonPool())) {
+            PaillierAsync async = new PaillierAsync(service, pubkey, prikey);
+            BigInteger[] ms = new BigInteger[32];
+            for (int i = 0; i < ms.length; i++) {
+                ms[i] = BigInteger.valueOf(1000 + i);
+            }
+            BigInteger[] decrypted = async.encrypt(ms)
+                    .thenCompose(async::decrypt).get();
+            boolean rejected = async.encrypt(new BigInteger[65])
+                    .isCompletedExceptionally()
+                    && new PaillierAsync(service, pubkey, null).decrypt(BigInteger.ONE)
+                    .isCompletedExceptionally();
+            BigInteger sum = async.encrypt(m1)
+                    .thenCombine(async.encrypt(m2), (a, b) -> new BigInteger[]{a, b})
+                    .thenCompose(pair -> async.add(pair[0], pair[1]))
+                    .thenCompose(async::decrypt).get();
+            if (java.util.Arrays.equals(ms, decrypted) && rejected
+                    && sum.equals(m1.add(m2))) {
+                System.out.println("Async service tests successfully.");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+// Damgard-Jurik
+        try {
+            DamgardJurik dj = new DamgardJurik(pubkey, 3);
+            BigInteger big1 = Randomness.randomZN(dj.getPlaintextModulus());
+            BigInteger big2 = Randomness.randomZN(dj.getPlaintextModulus());
+            BigInteger c1 = dj.encrypt(big1);
+            BigInteger c2 = dj.encrypt(big2);
+            BigInteger sum = dj.decrypt(dj.add(c1, c2), prikey);
+            BigInteger scaled = dj.decrypt(dj.mul(dj.selfBlind(c1,
+                    randomZStarN(pubkey.getN())), m2), prikey);
+            PrivateKey noFactors = new PrivateKey(prikey.getLambda(),
+                    prikey.getMu());
+            DamgardJurik dj1 = new DamgardJurik(pubkey, 1);
+            if (sum.equals(big1.add(big2).mod(dj.getPlaintextModulus()))
+                    && scaled.equals(big1.multiply(m2).mod(dj.getPlaintextModulus()))
+                    && dj.decrypt(c1, noFactors).equals(big1)
+                    && dj1.decrypt(Paillier.encrypt(m1, pubkey), prikey).equals(m1)) {
+                System.out.println("Damgard-Jurik tests successfully, s = 3, "
+                        + "expansion " + (double) dj.getModulus().bitLength()
+                        / dj.getPlaintextModulus().bitLength());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+// Accumulator
+        try {
+            int size = 2000;
+            List<BigInteger> cs = new java.util.ArrayList<BigInteger>(size);
+            BigInteger plain = BigInteger.ZERO;
+            for (int i = 0; i < size; i++) {
+                BigInteger mi = BigInteger.valueOf(i + 1);
+                cs.add(Paillier.encrypt(mi, pubkey));
+                plain = plain.add(mi);
+            }
+            BigInteger folded = BigInteger.ONE;
+            for (BigInteger ci : cs) {
+                folded = add(folded, ci, pubkey);
+            }
+            BigInteger sequential = new PaillierAccumulator(pubkey).addAll(cs).result();
+            BigInteger parallel = cs.parallelStream()
+                    .collect(PaillierAccumulator.summing(pubkey));
+            BigInteger empty = new PaillierAccumulator(pubkey).result();
+            if (decrypt(folded, pubkey, prikey).equals(plain)
+                    && sequential.equals(cs.stream().reduce(BigInteger.ONE,
+                    (a, b) -> a.multiply(b).mod(pubkey.getNSquare())))
+                    && parallel.equals(sequential) && empty.equals(BigInteger.ONE)) {
+                System.out.println("Accumulator tests successfully, " + size
+                        + " ciphertexts.");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+// Montgomery backend
+        try {
+            Randomness.useSeed(11);
+            BigInteger viaBigInteger = encrypt(m1, pubkey);
+            BigInteger blindedViaBigInteger = selfBlind(viaBigInteger,
+                    randomZStarN(pubkey.getN()), pubkey);
+            useArithmetic(Montgomery.ENGINE);
+            Randomness.useSeed(11);
+            BigInteger viaEngine = encrypt(m1, pubkey);
+            BigInteger blindedViaEngine = selfBlind(viaEngine,
+                    randomZStarN(pubkey.getN()), pubkey);
+            boolean same = viaEngine.equals(viaBigInteger)
+                    && blindedViaEngine.equals(blindedViaBigInteger)
+                    && decrypt(blindedViaEngine, pubkey, prikey).equals(m1)
+                    && decryptCRT(mul(viaEngine, m2, pubkey), pubkey, prikey)
+                    .equals(m1.multiply(m2).mod(pubkey.getN()));
+            useArithmetic(Montgomery.BIGINTEGER);
+            Randomness.useDrbg();
+            if (same && mul(viaEngine, m2, pubkey).equals(
+                    Montgomery.ENGINE.modPow(viaEngine, m2, pubkey.getNSquare()))) {
+                System.out.println("Montgomery backend tests successfully.");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+// Off-heap column
+        try {
+            int size = 256;
+            BigInteger[] xs = new BigInteger[size], ys = new BigInteger[size];
+            for (int i = 0; i < size; i++) {
+                xs[i] = BigInteger.valueOf(i + 1);
+                ys[i] = BigInteger.valueOf(2 * i + 1);
+            }
+            BigInteger[] cxs = encrypt(xs, pubkey, 0);
+            PaillierColumn column = PaillierColumn.of(cxs, pubkey, 0);
+            PaillierColumn other = PaillierColumn.of(encrypt(ys, pubkey, 0), pubkey, 0);
+            BigInteger[] sums = column.add(other, 0).decrypt(prikey, 0);
+            BigInteger[] scaled = column.mul(m2, column, 0).decrypt(prikey, 0);
+            BigInteger[] unfactored = column.decrypt(
+                    new PrivateKey(prikey.getLambda(), prikey.getMu()), 0);
+            boolean ok = java.util.Arrays.equals(PaillierColumn.of(cxs, pubkey, 0)
+                    .toArray(0), cxs) && java.util.Arrays.equals(unfactored, scaled);
+            other.set(3, pubkey.getN());
+            try {
+                other.decrypt(prikey, 0);
+                ok = false;
+            } catch (Exception e) {
+                ok &= e.getMessage().endsWith("at [3] are not in Z*_(n^2)");
+            }
+            for (int i = 0; i < size; i++) {
+                ok &= sums[i].equals(xs[i].add(ys[i]))
+                        && scaled[i].equals(xs[i].multiply(m2).mod(pubkey.getN()));
+            }
+            if (ok) {
+                System.out.println("Off-heap column tests successfully, "
+                        + column.getBytes() / size + " bytes per ciphertext.");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+// Validation policy
+        try {
+            BigInteger[] cs = encrypt(new BigInteger[]{m1, m2, m1, m2, m1, m2, m1}, pubkey, 0);
+            BigInteger[] tampered = cs.clone();
+            tampered[1] = prikey.getP().multiply(cs[1]).mod(pubkey.getNSquare());
+            tampered[4] = pubkey.getNSquare();
+            tampered[6] = pubkey.getN();
+            int[] invalid = findInvalid(tampered, pubkey.getNSquare(), pubkey.getN());
+            useValidation(Validation.BATCHED);
+            String message = null;
+            try {
+                decrypt(tampered, pubkey, prikey, 0);
+            } catch (Exception e) {
+                message = e.getMessage();
+            }
+            BigInteger[] batched = decrypt(cs, pubkey, prikey, 0);
+            boolean singleRejects = false;
+            try {
+                decrypt(tampered[1], pubkey, prikey);
+            } catch (Exception e) {
+                singleRejects = true;
+            }
+            useValidation(Validation.NONE);
+            BigInteger unchecked = decrypt(cs[0], pubkey, prikey);
+            useValidation(Validation.STRICT);
+            boolean strictRejects = false;
+            try {
+                decrypt(tampered[6], pubkey, prikey);
+            } catch (Exception e) {
+                strictRejects = true;
+            }
+            if (java.util.Arrays.equals(invalid, new int[]{1, 4, 6})
+                    && message != null && message.contains("[1, 4, 6]")
+                    && batched[1].equals(m2) && unchecked.equals(m1)
+                    && strictRejects && singleRejects
+                    && findInvalid(cs, pubkey.getNSquare(), pubkey.getN()).length == 0) {
+                System.out.println("Validation tests successfully.");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
     }
 }
\ No newline at end of file
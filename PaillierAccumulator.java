@@ -0,0 +1,142 @@
+package Paillier;
+import Montgomery.Montgomery;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+/**
+ * @ClassName: PaillierAccumulator
+ * @Description: This is a running homomorphic sum of Paillier
+ * ciphertexts, the product of all of them mod n^2. Each add is
+ * one Montgomery multiplication into a long[] limb array that
+ * is reused. The only allocation per ciphertext is the byte
+ * array toLimbs reads it through, since BigInteger gives no
+ * copy-free access to its magnitude; no intermediate BigInteger
+ * is built. Every multiplication leaves a factor R^{-1}; the
+ * accumulator counts them and removes them all with a single
+ * exponentiation in result.
+ *
+ * An accumulator is mutable and not thread-safe. Sum in
+ * parallel with one accumulator per thread and combine them, or
+ * with the collector of summing:
+ *
+ * ciphertexts.parallelStream().collect(PaillierAccumulator.summing(pubkey))
+ */
+public class PaillierAccumulator {
+    private final Paillier.PublicKey pubkey;
+    private final Montgomery mont;
+    private final long[] acc, operand, scratch;
+    private long steps; // Montgomery multiplications into acc, each leaving R^{-1}
+    private long count; // ciphertexts added
+    /**
+     * @Title: PaillierAccumulator
+     * @Description: This function creates an empty sum, the
+     * encryption of 0 with r = 1.
+     * @param pubkey
+     * The public key of Paillier PKE.
+     */
+    public PaillierAccumulator(Paillier.PublicKey pubkey) {
+        this(pubkey, new Montgomery(pubkey.getNSquare()));
+    }
+    private PaillierAccumulator(Paillier.PublicKey pubkey, Montgomery mont) {
+        this.pubkey = pubkey;
+        this.mont = mont;
+        this.acc = mont.toLimbs(BigInteger.ONE, new long[mont.getLimbs()]);
+        this.operand = new long[mont.getLimbs()];
+        this.scratch = mont.newScratch();
+    }
+    public long getCount() {
+        return count;
+    }
+    /**
+     * @Title: add
+     * @Description: This function adds one ciphertext to the
+     * sum.
+     * @param c
+     * The ciphertext.
+     * @return PaillierAccumulator this.
+     */
+    public PaillierAccumulator add(BigInteger c) {
+        mont.multiply(acc, mont.toLimbs(c, operand), acc, scratch);
+        steps++;
+        count++;
+        return this;
+    }
+    public PaillierAccumulator addAll(Collection<BigInteger> cs) {
+        for (BigInteger c : cs) {
+            add(c);
+        }
+        return this;
+    }
+    /**
+     * @Title: combine
+     * @Description: This function adds the sum of another
+     * accumulator of the same public key to this one.
+     * @param other
+     * The other accumulator, left unchanged.
+     * @return PaillierAccumulator this.
+     */
+    public PaillierAccumulator combine(PaillierAccumulator other) {
+        if (!other.pubkey.getN().equals(pubkey.getN())) {
+            throw new IllegalArgumentException(
+                    "PaillierAccumulator.combine: accumulators of different public keys");
+        }
+        mont.multiply(acc, other.acc, acc, scratch);
+        steps += other.steps + 1;
+        count += other.count;
+        return this;
+    }
+    /**
+     * @Title: result
+     * @Description: This function returns the sum as a
+     * ciphertext, the same value as folding Paillier.add over
+     * the added ciphertexts. The accumulator stays usable.
+     * @return BigInteger The product of the ciphertexts mod n^2.
+     */
+    public BigInteger result() {
+        BigInteger nsquare = pubkey.getNSquare();
+        return mont.toBigInteger(acc)
+                .multiply(mont.getR().modPow(BigInteger.valueOf(steps), nsquare))
+                .mod(nsquare);
+    }
+    /**
+     * @Title: summing
+     * @Description: This function returns a collector summing a
+     * stream of ciphertexts into one. On a parallel stream each
+     * thread fills its own accumulator and the accumulators are
+     * combined, in any order since the sum commutes.
+     * @param pubkey
+     * The public key of Paillier PKE.
+     */
+    public static Collector<BigInteger, PaillierAccumulator, BigInteger> summing(
+            Paillier.PublicKey pubkey) {
+        Montgomery mont = new Montgomery(pubkey.getNSquare());
+        return new Collector<BigInteger, PaillierAccumulator, BigInteger>() {
+            @Override
+            public Supplier<PaillierAccumulator> supplier() {
+                return () -> new PaillierAccumulator(pubkey, mont);
+            }
+            @Override
+            public BiConsumer<PaillierAccumulator, BigInteger> accumulator() {
+                return PaillierAccumulator::add;
+            }
+            @Override
+            public BinaryOperator<PaillierAccumulator> combiner() {
+                return PaillierAccumulator::combine;
+            }
+            @Override
+            public Function<PaillierAccumulator, BigInteger> finisher() {
+                return PaillierAccumulator::result;
+            }
+            @Override
+            public Set<Characteristics> characteristics() {
+                return EnumSet.of(Characteristics.UNORDERED);
+            }
+        };
+    }
+}
@@ -0,0 +1,99 @@
+package Paillier;
+import HomomorphicService.HomomorphicService;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+/**
+ * @ClassName: PaillierAsync
+ * @Description: This is the asynchronous facade of Paillier
+ * PKE for one key pair. Every call returns at once; the work
+ * runs on the CPU threads of a HomomorphicService, and checked
+ * exceptions of Paillier complete the future exceptionally.
+ */
+public class PaillierAsync {
+    private final HomomorphicService service;
+    private final Paillier.PublicKey pubkey;
+    private final Paillier.PrivateKey prikey;
+    /**
+     * @Title: PaillierAsync
+     * @Description: This function binds a key pair to a
+     * service.
+     * @param service
+     * The service running the requests.
+     * @param pubkey
+     * The public key of Paillier PKE.
+     * @param prikey
+     * The private key of Paillier PKE, or null for a facade
+     * that only encrypts and evaluates.
+     */
+    public PaillierAsync(HomomorphicService service, Paillier.PublicKey pubkey,
+                         Paillier.PrivateKey prikey) {
+        this.service = service;
+        this.pubkey = pubkey;
+        this.prikey = prikey;
+    }
+    public CompletableFuture<BigInteger> encrypt(BigInteger m) {
+        return service.submit("Paillier.encrypt", () -> Paillier.encrypt(m, pubkey));
+    }
+    /**
+     * @Title: decrypt
+     * @Description: This function decrypts with decryptCRT
+     * when the private key holds p and q. Without a private key
+     * the future fails with an IllegalStateException.
+     */
+    public CompletableFuture<BigInteger> decrypt(BigInteger c) {
+        if (prikey == null) {
+            return CompletableFuture.failedFuture(noPrivateKey());
+        }
+        return service.submit("Paillier.decrypt", decryption(c));
+    }
+    public CompletableFuture<BigInteger> add(BigInteger c1, BigInteger c2) {
+        return service.submit("Paillier.add", () -> Paillier.add(c1, c2, pubkey));
+    }
+    public CompletableFuture<BigInteger> mul(BigInteger c, BigInteger m) {
+        return service.submit("Paillier.mul", () -> Paillier.mul(c, m, pubkey));
+    }
+    public CompletableFuture<BigInteger> selfBlind(BigInteger c) {
+        return service.submit("Paillier.selfBlind", () -> Paillier.selfBlind(c,
+                Paillier.randomZStarN(pubkey.getN()), pubkey));
+    }
+    public CompletableFuture<BigInteger> weightedSum(BigInteger[] cs, BigInteger[] ws) {
+        return service.submit("Paillier.weightedSum",
+                () -> Paillier.weightedSum(cs, ws, pubkey, 1));
+    }
+    /**
+     * @Title: encrypt
+     * @Description: This function encrypts a batch, one
+     * request per message, so the messages spread over all CPU
+     * threads. The batch is admitted or rejected as a whole.
+     */
+    public CompletableFuture<BigInteger[]> encrypt(BigInteger[] ms) {
+        List<Callable<BigInteger>> tasks = new ArrayList<Callable<BigInteger>>(ms.length);
+        for (BigInteger m : ms) {
+            tasks.add(() -> Paillier.encrypt(m, pubkey));
+        }
+        return service.submitAll("Paillier.encrypt", tasks)
+                .thenApply(cs -> cs.toArray(new BigInteger[0]));
+    }
+    public CompletableFuture<BigInteger[]> decrypt(BigInteger[] cs) {
+        if (prikey == null) {
+            return CompletableFuture.failedFuture(noPrivateKey());
+        }
+        List<Callable<BigInteger>> tasks = new ArrayList<Callable<BigInteger>>(cs.length);
+        for (BigInteger c : cs) {
+            tasks.add(decryption(c));
+        }
+        return service.submitAll("Paillier.decrypt", tasks)
+                .thenApply(ms -> ms.toArray(new BigInteger[0]));
+    }
+    private static IllegalStateException noPrivateKey() {
+        return new IllegalStateException("PaillierAsync.decrypt: no private key");
+    }
+    private Callable<BigInteger> decryption(BigInteger c) {
+        return prikey.hasFactors()
+                ? () -> Paillier.decryptCRT(c, pubkey, prikey)
+                : () -> Paillier.decrypt(c, pubkey, prikey);
+    }
+}
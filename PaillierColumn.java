@@ -0,0 +1,261 @@
+package Paillier;
+import Batch.Batch;
+import Montgomery.Montgomery;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Objects;
+/**
+ * @ClassName: PaillierColumn
+ * @Description: This is a fixed-size column of Paillier
+ * ciphertexts stored off-heap. Every ciphertext takes k 64-bit
+ * limbs, k = ceil(bits(n^2)/64), in direct ByteBuffers of up to
+ * 1 GiB each, so a column of millions of ciphertexts is a few
+ * large native blocks instead of millions of BigInteger and
+ * int[] objects on the heap.
+ *
+ * Ciphertexts are kept in Montgomery form, c*R mod n^2, so the
+ * element-wise add is one Montgomery multiplication read from
+ * and written to the buffers with no object per element. mul
+ * and decrypt convert each element to a BigInteger once and
+ * exponentiate it with Paillier's arithmetic backend, like
+ * Paillier.mul and Paillier.decrypt; the pure-Java limb
+ * exponentiation is several times slower than the default
+ * BigInteger.modPow.
+ *
+ * Bulk operations run on Paillier's fork/join batches. Writers
+ * of the same element must not run concurrently.
+ */
+public class PaillierColumn {
+    private static final int SEGMENT_BYTES = 1 << 30;
+    private final Paillier.PublicKey pubkey;
+    private final Montgomery mont;
+    private final int size, k;
+    private final int recordsPerSegment;
+    private final ByteBuffer[] segments;
+    private final ThreadLocal<long[][]> scratch; // a, b, multiply scratch
+    /**
+     * @Title: PaillierColumn
+     * @Description: This function allocates a column of size
+     * ciphertexts, all set to 1, the encryption of 0 with r = 1.
+     * @param pubkey
+     * The public key of Paillier PKE.
+     * @param size
+     * The number of ciphertexts.
+     */
+    public PaillierColumn(Paillier.PublicKey pubkey, int size) {
+        this(pubkey, new Montgomery(pubkey.getNSquare()), size);
+    }
+    private PaillierColumn(Paillier.PublicKey pubkey, Montgomery mont, int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("PaillierColumn: require size >= 0");
+        }
+        this.pubkey = pubkey;
+        this.mont = mont;
+        this.size = size;
+        this.k = mont.getLimbs();
+        this.recordsPerSegment = SEGMENT_BYTES / (8 * k);
+        int count = (int) (((long) size + recordsPerSegment - 1) / recordsPerSegment);
+        this.segments = new ByteBuffer[count];
+        for (int s = 0; s < count; s++) {
+            int records = Math.min(recordsPerSegment, size - s * recordsPerSegment);
+            segments[s] = ByteBuffer.allocateDirect(records * 8 * k)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        }
+        this.scratch = ThreadLocal.withInitial(
+                () -> new long[][]{new long[k], new long[k], mont.newScratch()});
+        long[] one = mont.toLimbs(mont.getR(), new long[k]);
+        for (int i = 0; i < size; i++) {
+            write(i, one);
+        }
+    }
+    /**
+     * @Title: of
+     * @Description: This function copies ciphertexts into a new
+     * column.
+     * @param cs
+     * The ciphertexts, in Z_(n^2).
+     * @param parallelism
+     * The number of threads, or 0 for the common fork/join pool.
+     */
+    public static PaillierColumn of(BigInteger[] cs, Paillier.PublicKey pubkey,
+                                    int parallelism) throws Exception {
+        PaillierColumn column = new PaillierColumn(pubkey, cs.length);
+        Batch.run(cs.length, parallelism, i -> column.set(i, cs[i]));
+        return column;
+    }
+    public Paillier.PublicKey getPubkey() {
+        return pubkey;
+    }
+    public int size() {
+        return size;
+    }
+    /**
+     * @Title: getBytes
+     * @Description: This function returns the off-heap bytes
+     * taken by the column.
+     */
+    public long getBytes() {
+        return (long) size * 8 * k;
+    }
+    /**
+     * @Title: set
+     * @Description: This function stores a ciphertext.
+     * @param i
+     * The index.
+     * @param c
+     * The ciphertext, in Z_(n^2).
+     */
+    public void set(int i, BigInteger c) {
+        Objects.checkIndex(i, size);
+        if (c.signum() < 0 || c.compareTo(pubkey.getNSquare()) >= 0) {
+            throw new IllegalArgumentException(
+                    "PaillierColumn.set(int i, BigInteger c): ciphertext c is not in Z_(n^2)");
+        }
+        long[][] w = scratch.get();
+        mont.toMontgomery(mont.toLimbs(c, w[0]), w[1], w[2]);
+        write(i, w[1]);
+    }
+    /**
+     * @Title: get
+     * @Description: This function returns a ciphertext.
+     * @param i
+     * The index.
+     * @return BigInteger The ciphertext.
+     */
+    public BigInteger get(int i) {
+        Objects.checkIndex(i, size);
+        long[][] w = scratch.get();
+        mont.fromMontgomery(read(i, w[0]), w[1], w[2]);
+        return mont.toBigInteger(w[1]);
+    }
+    public BigInteger[] toArray(int parallelism) throws Exception {
+        BigInteger[] cs = new BigInteger[size];
+        Batch.run(size, parallelism, i -> cs[i] = get(i));
+        return cs;
+    }
+    /**
+     * @Title: add
+     * @Description: The function supports the element-wise
+     * homomorphic addition of two columns, out[i] = this[i] *
+     * other[i] mod n^2, working on the stored limbs only.
+     * @param other
+     * A column of the same public key and size.
+     * @param out
+     * The result column, which may be this or other.
+     * @param parallelism
+     * The number of threads, or 0 for the common fork/join pool.
+     * @return PaillierColumn out.
+     */
+    public PaillierColumn add(PaillierColumn other, PaillierColumn out,
+                              int parallelism) throws Exception {
+        requireCompatible(other);
+        requireCompatible(out);
+        Batch.run(size, parallelism, i -> {
+            long[][] w = scratch.get();
+            mont.multiply(read(i, w[0]), other.read(i, w[1]), w[0], w[2]);
+            out.write(i, w[0]);
+        });
+        return out;
+    }
+    /**
+     * @Title: add
+     * @Description: This function returns a new column holding
+     * the element-wise sum of this and other.
+     */
+    public PaillierColumn add(PaillierColumn other, int parallelism)
+            throws Exception {
+        return add(other, new PaillierColumn(pubkey, mont, size), parallelism);
+    }
+    /**
+     * @Title: mul
+     * @Description: The function supports the element-wise
+     * homomorphic multiplication with one plaintext, out[i] =
+     * this[i]^m mod n^2, through Paillier.mul.
+     * @param m
+     * The plaintext.
+     * @param out
+     * The result column, which may be this.
+     * @param parallelism
+     * The number of threads, or 0 for the common fork/join pool.
+     * @return PaillierColumn out.
+     */
+    public PaillierColumn mul(BigInteger m, PaillierColumn out, int parallelism)
+            throws Exception {
+        requireCompatible(out);
+        Batch.run(size, parallelism,
+                i -> out.set(i, Paillier.mul(get(i), m, pubkey)));
+        return out;
+    }
+    public PaillierColumn mul(BigInteger m, int parallelism) throws Exception {
+        return mul(m, new PaillierColumn(pubkey, mont, size), parallelism);
+    }
+    /**
+     * @Title: decrypt
+     * @Description: This function decrypts every ciphertext,
+     * with the CRT when the private key holds p and q. Unless
+     * the Paillier validation is NONE, the column is first
+     * checked as a whole, like the batch decrypt: the product of
+     * all elements, taken on the limbs, is a unit mod n exactly
+     * when every element is.
+     * @param prikey
+     * The private key of Paillier PKE.
+     * @param parallelism
+     * The number of threads, or 0 for the common fork/join pool.
+     * @return BigInteger[] The plaintexts, in column order.
+     * @throws Exception
+     * If a ciphertext is not in Z*_(n^2), there is an
+     * exception.
+     */
+    public BigInteger[] decrypt(Paillier.PrivateKey prikey, int parallelism)
+            throws Exception {
+        if (Paillier.getValidation() != Paillier.Validation.NONE) {
+            requireUnits(parallelism);
+        }
+        BigInteger[] ms = new BigInteger[size];
+        if (prikey.hasFactors()) {
+            Batch.run(size, parallelism,
+                    i -> ms[i] = Paillier.crt(get(i), prikey));
+        } else {
+            Batch.run(size, parallelism,
+                    i -> ms[i] = Paillier.plain(get(i), pubkey, prikey));
+        }
+        return ms;
+    }
+    private void requireUnits(int parallelism) throws Exception {
+        long[] product = mont.toLimbs(mont.getR(), new long[k]);
+        long[][] w = scratch.get();
+        for (int i = 0; i < size; i++) {
+            mont.multiply(product, read(i, w[0]), product, w[2]);
+        }
+        if (mont.toBigInteger(product).gcd(pubkey.getN()).equals(BigInteger.ONE)) {
+            return;
+        }
+        int[] invalid = Paillier.findInvalid(toArray(parallelism),
+                pubkey.getNSquare(), pubkey.getN());
+        throw new Exception("PaillierColumn.decrypt(PrivateKey prikey): ciphertexts at "
+                + Arrays.toString(invalid) + " are not in Z*_(n^2)");
+    }
+    private void requireCompatible(PaillierColumn other) {
+        if (other.size != size || !other.pubkey.getN().equals(pubkey.getN())) {
+            throw new IllegalArgumentException(
+                    "PaillierColumn: columns of different sizes or public keys");
+        }
+    }
+    private long[] read(int i, long[] dst) {
+        ByteBuffer segment = segments[i / recordsPerSegment];
+        int offset = (i % recordsPerSegment) * 8 * k;
+        for (int j = 0; j < k; j++) {
+            dst[j] = segment.getLong(offset + 8 * j);
+        }
+        return dst;
+    }
+    private void write(int i, long[] src) {
+        ByteBuffer segment = segments[i / recordsPerSegment];
+        int offset = (i % recordsPerSegment) * 8 * k;
+        for (int j = 0; j < k; j++) {
+            segment.putLong(offset + 8 * j, src[j]);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package Paillier;
+import java.math.BigInteger;
+/**
+ * @ClassName: PaillierMultiExp
+ * @Description: This is a simultaneous multi-exponentiation
+ * engine, computing prod b_i^{e_i} mod m with one shared chain
+ * of squarings. Short vectors use Straus' interleaved window
+ * method, long vectors use Pippenger's bucket method.
+ */
+public class PaillierMultiExp {
+    static final int STRAUS_MAX = 32; // Longest vector handled by Straus
+    private static final int STRAUS_WINDOW = 4;
+    /**
+     * @Title: multiExp
+     * @Description: This function computes prod b_i^{e_i} mod m
+     * over the items in [lo, hi).
+     * @param bases
+     * The bases b_i, in [0, m).
+     * @param exps
+     * The non-negative exponents e_i.
+     * @param lo
+     * The first index, inclusive.
+     * @param hi
+     * The last index, exclusive.
+     * @param m
+     * The modulus.
+     * @return BigInteger The product prod b_i^{e_i} mod m.
+     */
+    public static BigInteger multiExp(BigInteger[] bases,
+                                      BigInteger[] exps, int lo, int hi, BigInteger m) {
+        if (hi - lo <= STRAUS_MAX) {
+            return straus(bases, exps, lo, hi, m);
+        }
+        return pippenger(bases, exps, lo, hi, m);
+    }
+    /**
+     * @Title: straus
+     * @Description: This function is Straus' method: each base
+     * gets a table of its first 2^w powers, and the exponents
+     * are scanned w bits at a time from the top, sharing the
+     * squarings between all bases.
+     */
+    static BigInteger straus(BigInteger[] bases, BigInteger[] exps,
+                             int lo, int hi, BigInteger m) {
+        int w = STRAUS_WINDOW;
+        int size = 1 << w;
+        int maxBits = maxBitLength(exps, lo, hi);
+        BigInteger[][] tables = new BigInteger[hi - lo][];
+        for (int i = lo; i < hi; i++) {
+            BigInteger[] table = new BigInteger[size];
+            table[1] = bases[i].mod(m);
+            for (int d = 2; d < size; d++) {
+                table[d] = table[d - 1].multiply(table[1]).mod(m);
+            }
+            tables[i - lo] = table;
+        }
+        BigInteger result = null;
+        for (int pos = ((maxBits + w - 1) / w - 1) * w; pos >= 0; pos -= w) {
+            if (result != null) {
+                for (int s = 0; s < w; s++) {
+                    result = result.multiply(result).mod(m);
+                }
+            }
+            for (int i = lo; i < hi; i++) {
+                int d = digit(exps[i], pos, w);
+                if (d != 0) {
+                    result = result == null ? tables[i - lo][d]
+                            : result.multiply(tables[i - lo][d]).mod(m);
+                }
+            }
+        }
+        return result == null ? BigInteger.ONE.mod(m) : result;
+    }
+    /**
+     * @Title: pippenger
+     * @Description: This function is Pippenger's bucket method:
+     * for each c-bit window, bases are multiplied into the bucket
+     * of their digit, and the buckets are combined with a running
+     * product, so each base costs one multiplication per window.
+     */
+    static BigInteger pippenger(BigInteger[] bases, BigInteger[] exps,
+                                int lo, int hi, BigInteger m) {
+        int c = pippengerWindow(hi - lo);
+        int maxBits = maxBitLength(exps, lo, hi);
+        BigInteger[] buckets = new BigInteger[1 << c];
+        BigInteger result = null;
+        for (int pos = ((maxBits + c - 1) / c - 1) * c; pos >= 0; pos -= c) {
+            if (result != null) {
+                for (int s = 0; s < c; s++) {
+                    result = result.multiply(result).mod(m);
+                }
+            }
+            java.util.Arrays.fill(buckets, null);
+            for (int i = lo; i < hi; i++) {
+                int d = digit(exps[i], pos, c);
+                if (d != 0) {
+                    buckets[d] = buckets[d] == null ? bases[i].mod(m)
+                            : buckets[d].multiply(bases[i]).mod(m);
+                }
+            }
+// prod_d buckets[d]^d = prod_d (prod_{d' >= d} buckets[d'])
+            BigInteger running = null;
+            BigInteger window = null;
+            for (int d = buckets.length - 1; d > 0; d--) {
+                if (buckets[d] != null) {
+                    running = running == null ? buckets[d]
+                            : running.multiply(buckets[d]).mod(m);
+                }
+                if (running != null) {
+                    window = window == null ? running
+                            : window.multiply(running).mod(m);
+                }
+            }
+            if (window != null) {
+                result = result == null ? window
+                        : result.multiply(window).mod(m);
+            }
+        }
+        return result == null ? BigInteger.ONE.mod(m) : result;
+    }
+    /**
+     * @Title: pippengerWindow
+     * @Description: This function picks the bucket window
+     * width, roughly log2(k) - 2 for k bases.
+     */
+    static int pippengerWindow(int k) {
+        int c = 31 - Integer.numberOfLeadingZeros(k) - 2;
+        return Math.max(4, Math.min(16, c));
+    }
+    private static int maxBitLength(BigInteger[] exps, int lo, int hi) {
+        int maxBits = 0;
+        for (int i = lo; i < hi; i++) {
+            maxBits = Math.max(maxBits, exps[i].bitLength());
+        }
+        return maxBits;
+    }
+    private static int digit(BigInteger e, int pos, int w) {
+        int d = 0;
+        for (int b = w - 1; b >= 0; b--) {
+            d = (d << 1) | (e.testBit(pos + b) ? 1 : 0);
+        }
+        return d;
+    }
+}
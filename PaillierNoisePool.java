@@ -0,0 +1,197 @@
+package Paillier;
+import Metrics.Metrics;
+import java.math.BigInteger;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+/**
+ * @ClassName: PaillierNoisePool
+ * @Description: This is a bounded pool of precomputed
+ * Paillier noise values r^n mod n^2. Worker threads fill the
+ * pool ahead of time, so the online cost of encryption and
+ * self-blinding drops to one multiplication mod n^2.
+ */
+public class PaillierNoisePool implements AutoCloseable {
+    /**
+     * @ClassName: ExhaustedPolicy
+     * @Description: What draw does when the pool is empty.
+     * COMPUTE computes a fresh noise value on the caller's
+     * thread, BLOCK waits for a worker to produce one, FAIL
+     * throws an exception. Once the pool is closed no worker
+     * produces values, so BLOCK computes on the caller's thread
+     * like COMPUTE.
+     */
+    public enum ExhaustedPolicy {
+        COMPUTE, BLOCK, FAIL
+    }
+    private final Paillier.PublicKey pubkey;
+    private final ArrayBlockingQueue<BigInteger> pool;
+    private final int lowWater;
+    private final ExhaustedPolicy policy;
+    private final Thread[] workers;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition belowLowWater = lock.newCondition();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private static final Metrics.Counter HIT = Metrics.counter("PaillierNoisePool.hit");
+    private static final Metrics.Counter MISS = Metrics.counter("PaillierNoisePool.miss");
+    private static final long BLOCK_POLL_MILLIS = 50; // how often a blocked draw rechecks closed
+    private volatile boolean refilling = true;
+    private volatile boolean closed = false;
+    /**
+     * @Title: PaillierNoisePool
+     * @Description: This function creates the pool and starts
+     * its worker threads.
+     * @param pubkey
+     * The public key of Paillier PKE.
+     * @param capacity
+     * The maximum number of noise values kept.
+     * @param lowWater
+     * The workers resume filling once the pool holds no more
+     * than lowWater values.
+     * @param threads
+     * The number of worker threads.
+     * @param policy
+     * What to do when the pool is empty.
+     */
+    public PaillierNoisePool(Paillier.PublicKey pubkey, int capacity,
+                             int lowWater, int threads, ExhaustedPolicy policy) {
+        if (capacity <= 0 || lowWater < 0 || lowWater >= capacity
+                || threads <= 0) {
+            throw new IllegalArgumentException(
+                    "PaillierNoisePool: require 0 <= lowWater < capacity and threads > 0");
+        }
+        this.pubkey = pubkey;
+        this.pool = new ArrayBlockingQueue<BigInteger>(capacity);
+        this.lowWater = lowWater;
+        this.policy = policy;
+        this.workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(this::fill, "paillier-noise-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+    /**
+     * @Title: draw
+     * @Description: This function returns one noise value
+     * r^n mod n^2, taken from the pool when available.
+     * @return BigInteger A noise value r^n mod n^2.
+     * @throws Exception
+     * If the pool is empty and the policy is FAIL, or the
+     * caller is interrupted while waiting, there is an
+     * exception.
+     */
+    public BigInteger draw() throws Exception {
+        BigInteger noise = pool.poll();
+        if (noise != null) {
+            hits.incrementAndGet();
+            HIT.increment();
+        } else {
+            misses.incrementAndGet();
+            MISS.increment();
+            switch (policy) {
+                case BLOCK:
+                    signalRefill();
+                    noise = take();
+                    break;
+                case FAIL:
+                    signalRefill();
+                    throw new Exception(
+                            "PaillierNoisePool.draw(): noise pool is exhausted");
+                default:
+                    noise = computeNoise();
+                    break;
+            }
+        }
+        if (pool.size() <= lowWater) {
+            signalRefill();
+        }
+        return noise;
+    }
+    public long getHitCount() {
+        return hits.get();
+    }
+    public long getMissCount() {
+        return misses.get();
+    }
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+    public int size() {
+        return pool.size();
+    }
+    public Paillier.PublicKey getPubkey() {
+        return pubkey;
+    }
+    /**
+     * @Title: close
+     * @Description: This function stops the worker threads.
+     * Values already in the pool can still be drawn.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+    private BigInteger take() throws InterruptedException {
+        BigInteger noise;
+        while ((noise = pool.poll(BLOCK_POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+            if (closed) {
+                return computeNoise();
+            }
+        }
+        return noise;
+    }
+    private BigInteger computeNoise() {
+        BigInteger n = pubkey.getN();
+        return Paillier.randomZStarN(n).modPow(n, pubkey.getNSquare());
+    }
+    private void signalRefill() {
+        if (refilling) {
+            return;
+        }
+        lock.lock();
+        try {
+            refilling = true;
+            belowLowWater.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+    private void fill() {
+        try {
+            while (!closed) {
+                lock.lock();
+                try {
+                    while (!closed && !refilling) {
+                        belowLowWater.await();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                if (closed) {
+                    return;
+                }
+                if (pool.remainingCapacity() == 0) {
+// The pool is full: sleep until it drains to lowWater
+                    refilling = false;
+                    if (pool.size() <= lowWater) {
+                        signalRefill();
+                    }
+                    continue;
+                }
+// another worker may take the last slot meanwhile; put waits for it rather than drop the value
+                pool.put(computeNoise());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
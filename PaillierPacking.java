@@ -0,0 +1,237 @@
+package Paillier;
+import java.math.BigInteger;
+/**
+ * @ClassName: PaillierPacking
+ * @Description: This is a plaintext packing codec for Paillier
+ * PKE. Many unsigned slotBits-bit values are packed into one
+ * plaintext, each slot followed by headroomBits of carry space,
+ * so one encryption, addition or scalar multiplication acts on
+ * all slots at once.
+ */
+public class PaillierPacking {
+    /**
+     * @ClassName: PackedCiphertext
+     * @Description: This is an immutable class for storing a
+     * packed ciphertext together with an upper bound on the
+     * value held in any of its slots and the codec that packed
+     * it.
+     */
+    public static class PackedCiphertext {
+        private final BigInteger c, bound;
+        private final PaillierPacking codec;
+        PackedCiphertext(BigInteger c, BigInteger bound, PaillierPacking codec) {
+            this.c = c;
+            this.bound = bound;
+            this.codec = codec;
+        }
+        public BigInteger getC() {
+            return c;
+        }
+        public BigInteger getBound() {
+            return bound;
+        }
+    }
+    private final Paillier.PublicKey pubkey;
+    private final int slotBits, slotWidth, slots;
+    private final BigInteger slotMax, slotLimit;
+    /**
+     * @Title: PaillierPacking
+     * @Description: This function creates a codec for a public
+     * key.
+     * @param pubkey
+     * The public key of Paillier PKE.
+     * @param slotBits
+     * The width of the values stored in each slot.
+     * @param headroomBits
+     * The extra bits above each slot that absorb carries. A slot
+     * and its headroom are unpacked into a long, so together
+     * they are at most 63 bits.
+     */
+    public PaillierPacking(Paillier.PublicKey pubkey, int slotBits,
+                           int headroomBits) {
+        if (slotBits <= 0 || headroomBits < 0 || slotBits + headroomBits > 63) {
+            throw new IllegalArgumentException(
+                    "PaillierPacking: require 0 < slotBits, 0 <= headroomBits and slotBits + headroomBits <= 63");
+        }
+        this.pubkey = pubkey;
+        this.slotBits = slotBits;
+        this.slotWidth = slotBits + headroomBits;
+        this.slots = (pubkey.getN().bitLength() - 1) / slotWidth;
+        if (slots == 0) {
+            throw new IllegalArgumentException(
+                    "PaillierPacking: a slot is wider than the plaintext space");
+        }
+        this.slotMax = BigInteger.ONE.shiftLeft(slotBits)
+                .subtract(BigInteger.ONE);
+        this.slotLimit = BigInteger.ONE.shiftLeft(slotWidth)
+                .subtract(BigInteger.ONE);
+    }
+    /**
+     * @Title: getSlots
+     * @Description: This function returns the number of values
+     * that fit in one ciphertext.
+     * @return int The packing factor.
+     */
+    public int getSlots() {
+        return slots;
+    }
+    /**
+     * @Title: pack
+     * @Description: This function packs up to getSlots() values
+     * into one plaintext, slot 0 in the lowest bits.
+     * @param values
+     * The values, each in [0, 2^slotBits).
+     * @return BigInteger The packed plaintext.
+     * @throws Exception
+     * If there are too many values, or a value does not fit
+     * in a slot, there is an exception.
+     */
+    public BigInteger pack(long[] values) throws Exception {
+        if (values.length > slots) {
+            throw new Exception("PaillierPacking.pack(long[] values): more than "
+                    + slots + " values");
+        }
+        BigInteger m = BigInteger.ZERO;
+        for (int i = values.length - 1; i >= 0; i--) {
+            BigInteger v = BigInteger.valueOf(values[i]);
+            if (v.signum() < 0 || v.compareTo(slotMax) > 0) {
+                throw new Exception("PaillierPacking.pack(long[] values): value "
+                        + values[i] + " is not in [0, 2^" + slotBits + ")");
+            }
+            m = m.shiftLeft(slotWidth).or(v);
+        }
+        return m;
+    }
+    /**
+     * @Title: unpack
+     * @Description: This function splits a plaintext into its
+     * getSlots() slot values, carries included.
+     * @param m
+     * The packed plaintext.
+     * @return long[] The slot values.
+     */
+    public long[] unpack(BigInteger m) {
+        long[] values = new long[slots];
+        for (int i = 0; i < slots; i++) {
+            values[i] = m.and(slotLimit).longValue();
+            m = m.shiftRight(slotWidth);
+        }
+        return values;
+    }
+    /**
+     * @Title: encrypt
+     * @Description: This function packs and encrypts up to
+     * getSlots() values. A packed plaintext may be 0, so it is
+     * encrypted in Z_n rather than Z*_n.
+     * @param values
+     * The values, each in [0, 2^slotBits).
+     * @return PackedCiphertext The packed ciphertext.
+     * @throws Exception
+     * If the values cannot be packed, there is an exception.
+     */
+    public PackedCiphertext encrypt(long[] values) throws Exception {
+        BigInteger m = pack(values);
+        BigInteger n = pubkey.getN();
+        BigInteger nsquare = pubkey.getNSquare();
+        BigInteger r = Paillier.randomZStarN(n);
+        BigInteger c = pubkey.gPow(m).multiply(r.modPow(n, nsquare))
+                .mod(nsquare);
+        return new PackedCiphertext(c, slotMax, this);
+    }
+    /**
+     * @Title: decrypt
+     * @Description: This function decrypts and unpacks a packed
+     * ciphertext.
+     * @param pc
+     * The packed ciphertext.
+     * @param prikey
+     * The private key of Paillier PKE.
+     * @return long[] The slot values.
+     * @throws Exception
+     * If the cipher is not in Z*_(n^2), or was packed by another
+     * codec, there is an exception.
+     */
+    public long[] decrypt(PackedCiphertext pc, Paillier.PrivateKey prikey)
+            throws Exception {
+        checkCodec(pc, "decrypt");
+        BigInteger m = prikey.hasFactors()
+                ? Paillier.decryptCRT(pc.getC(), pubkey, prikey)
+                : Paillier.decrypt(pc.getC(), pubkey, prikey);
+        return unpack(m);
+    }
+    /**
+     * @Title: add
+     * @Description: The function supports the slot-wise
+     * homomorphic addition of two packed ciphertexts.
+     * @param pc1
+     * The packed ciphertext.
+     * @param pc2
+     * The packed ciphertext.
+     * @return PackedCiphertext The slot-wise sum.
+     * @throws Exception
+     * If a ciphertext was packed by another codec, or a slot
+     * could overflow into its neighbour, there is an exception.
+     */
+    public PackedCiphertext add(PackedCiphertext pc1,
+                                PackedCiphertext pc2) throws Exception {
+        checkCodec(pc1, "add");
+        checkCodec(pc2, "add");
+        BigInteger bound = checkBound(pc1.getBound().add(pc2.getBound()));
+        return new PackedCiphertext(Paillier.add(pc1.getC(), pc2.getC(),
+                pubkey), bound, this);
+    }
+    /**
+     * @Title: mul
+     * @Description: The function supports the slot-wise
+     * homomorphic multiplication with one plaintext scalar.
+     * @param pc
+     * The packed ciphertext.
+     * @param k
+     * The non-negative scalar.
+     * @return PackedCiphertext The slot-wise product.
+     * @throws Exception
+     * If k is negative, pc was packed by another codec, or a
+     * slot could overflow into its neighbour, there is an
+     * exception.
+     */
+    public PackedCiphertext mul(PackedCiphertext pc, long k)
+            throws Exception {
+        checkCodec(pc, "mul");
+        if (k < 0) {
+            throw new Exception("PaillierPacking.mul(PackedCiphertext pc, long k): k is negative");
+        }
+        BigInteger bound = checkBound(pc.getBound()
+                .multiply(BigInteger.valueOf(k)));
+        return new PackedCiphertext(Paillier.mul(pc.getC(),
+                BigInteger.valueOf(k), pubkey), bound, this);
+    }
+    /**
+     * @Title: safeAdditions
+     * @Description: This function returns how many more fresh
+     * ciphertexts can be added to pc before a slot may overflow.
+     * @param pc
+     * The packed ciphertext.
+     * @return long The number of safe additions.
+     */
+    public long safeAdditions(PackedCiphertext pc) {
+        BigInteger left = slotLimit.subtract(pc.getBound()).divide(slotMax);
+        return left.bitLength() < 64 ? left.longValue() : Long.MAX_VALUE;
+    }
+// another codec with the same slot layout under the same key packs compatibly
+    private void checkCodec(PackedCiphertext pc, String method) throws Exception {
+        PaillierPacking other = pc.codec;
+        if (other != this && (other.slotBits != slotBits
+                || other.slotWidth != slotWidth
+                || !other.pubkey.getN().equals(pubkey.getN()))) {
+            throw new Exception("PaillierPacking." + method
+                    + ": ciphertext was packed by a different codec or key");
+        }
+    }
+    private BigInteger checkBound(BigInteger bound) throws Exception {
+        if (bound.compareTo(slotLimit) > 0) {
+            throw new Exception("PaillierPacking: slot overflow, bound "
+                    + bound + " exceeds 2^" + slotWidth + "-1");
+        }
+        return bound;
+    }
+}
@@ -0,0 +1,141 @@
+package Paillier;
+import Randomness.Randomness;
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+/**
+ * @ClassName: PaillierPrimeGenerator
+ * @Description: This is a parallel generator of Sophie Germain
+ * primes p' (p' and 2p'+1 both prime) for Paillier key
+ * generation. Each worker sieves a window of candidates for
+ * p' and 2p'+1 against a table of small primes, runs a base-2
+ * Fermat test on the survivors and only then Miller-Rabin.
+ * The first worker to find a prime wins and the others are
+ * cancelled.
+ */
+public class PaillierPrimeGenerator {
+    private static final int SIEVE_LIMIT = 1 << 16;
+    private static final int WINDOW = 1 << 14; // Odd candidates per sieve window
+    private static final int[] SMALL_PRIMES = smallPrimes(SIEVE_LIMIT);
+    private static final BigInteger TWO = BigInteger.valueOf(2);
+    /**
+     * @Title: sophieGermainPrime
+     * @Description: This function returns a k-bit prime p'
+     * such that 2p'+1 is also prime, searching on all cores.
+     * @param k
+     * The bit length of p'.
+     * @param certainty
+     * The Miller-Rabin certainty for both p' and 2p'+1.
+     * @return BigInteger The prime p'.
+     */
+    public static BigInteger sophieGermainPrime(int k, int certainty) {
+        return sophieGermainPrime(k, certainty,
+                Runtime.getRuntime().availableProcessors());
+    }
+    /**
+     * @Title: sophieGermainPrime
+     * @Description: This function returns a k-bit prime p'
+     * such that 2p'+1 is also prime, searching with a given
+     * number of worker threads.
+     * @param k
+     * The bit length of p', at least 16.
+     * @param certainty
+     * The Miller-Rabin certainty for both p' and 2p'+1.
+     * @param threads
+     * The number of worker threads.
+     * @return BigInteger The prime p'.
+     */
+    public static BigInteger sophieGermainPrime(int k, int certainty,
+                                                int threads) {
+        if (k < 16 || threads <= 0) {
+            throw new IllegalArgumentException(
+                    "PaillierPrimeGenerator: require k >= 16 and threads > 0");
+        }
+        if (threads == 1) {
+            return search(k, certainty, Randomness.get());
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<BigInteger>> workers = new ArrayList<Callable<BigInteger>>();
+            for (int i = 0; i < threads; i++) {
+                workers.add(() -> search(k, certainty, Randomness.get()));
+            }
+// invokeAny returns the first result and interrupts the other workers
+            return pool.invokeAny(workers);
+        } catch (Exception e) {
+            throw new IllegalStateException(
+                    "PaillierPrimeGenerator: prime search failed", e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    /**
+     * @Title: search
+     * @Description: This function sieves random windows of odd
+     * k-bit candidates until one passes all tests. It stops
+     * with an exception when its thread is interrupted.
+     */
+    static BigInteger search(int k, int certainty, SecureRandom random) {
+        BitSet composite = new BitSet(WINDOW);
+        while (true) {
+            BigInteger start = new BigInteger(k, random).setBit(k - 1)
+                    .setBit(0);
+            composite.clear();
+            for (int s : SMALL_PRIMES) {
+                int r = start.mod(BigInteger.valueOf(s)).intValue();
+                int inv2 = (s + 1) / 2;
+// start+2i = 0 mod s rules out p', start+2i = (s-1)/2 mod s rules out 2p'+1
+                int i0 = (int) ((long) (s - r) % s * inv2 % s);
+                int i1 = (int) ((long) ((s - 1) / 2 - r + s) % s * inv2 % s);
+                for (int i = i0; i < WINDOW; i += s) {
+                    composite.set(i);
+                }
+                for (int i = i1; i < WINDOW; i += s) {
+                    composite.set(i);
+                }
+            }
+            for (int i = composite.nextClearBit(0); i < WINDOW;
+                 i = composite.nextClearBit(i + 1)) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new IllegalStateException(
+                            "PaillierPrimeGenerator: search cancelled");
+                }
+                BigInteger p_prime = start.add(BigInteger.valueOf(2L * i));
+                if (p_prime.bitLength() != k) {
+                    break;
+                }
+                BigInteger p = p_prime.shiftLeft(1).add(BigInteger.ONE);
+                if (TWO.modPow(p_prime.subtract(BigInteger.ONE), p_prime)
+                        .equals(BigInteger.ONE)
+                        && TWO.modPow(p.subtract(BigInteger.ONE), p)
+                        .equals(BigInteger.ONE)
+                        && p_prime.isProbablePrime(certainty)
+                        && p.isProbablePrime(certainty)) {
+                    return p_prime;
+                }
+            }
+        }
+    }
+    private static int[] smallPrimes(int limit) {
+        BitSet sieve = new BitSet(limit);
+        List<Integer> primes = new ArrayList<Integer>();
+        for (int i = 3; i < limit; i += 2) {
+            if (!sieve.get(i)) {
+                primes.add(i);
+                for (long j = (long) i * i; j < limit; j += 2L * i) {
+                    sieve.set((int) j);
+                }
+            }
+        }
+        int[] result = new int[primes.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = primes.get(i);
+        }
+        return result;
+    }
+}
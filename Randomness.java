@@ -0,0 +1,180 @@
+package Randomness;
+import java.math.BigInteger;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+/**
+ * @ClassName: Randomness
+ * @Description: This is the shared randomness provider of the
+ * three schemes. Every thread gets its own generator, created
+ * once by the current factory, so no call constructs or seeds
+ * a SecureRandom and threads never contend on one instance.
+ * The default factory returns a DRBG that is reseeded every
+ * RESEED_INTERVAL draws. A draw is one get() call, or one
+ * candidate value generated by the random* helpers, so a bulk
+ * helper advances the count by every value it generates.
+ * useSeed switches to a deterministic
+ * mode for reproducible benchmarks.
+ */
+public class Randomness {
+    static final int RESEED_INTERVAL = 1 << 16;
+    private static final AtomicLong generation = new AtomicLong();
+    private static volatile Supplier<SecureRandom> factory = Randomness::newDrbg;
+    private static volatile boolean reseed = true;
+    private static final ThreadLocal<Slot> slots = new ThreadLocal<Slot>();
+    /**
+     * @ClassName: Slot
+     * @Description: A thread's generator, the factory
+     * generation it came from and its draws since the last
+     * reseed.
+     */
+    private static class Slot {
+        final SecureRandom random;
+        final long generation;
+        int draws;
+        Slot(SecureRandom random, long generation) {
+            this.random = random;
+            this.generation = generation;
+        }
+    }
+    /**
+     * @Title: get
+     * @Description: This function returns the generator of the
+     * calling thread. It must not be handed to other threads.
+     * @return SecureRandom The thread's generator.
+     */
+    public static SecureRandom get() {
+        return draw(slot());
+    }
+    private static Slot slot() {
+        Slot slot = slots.get();
+        long current = generation.get();
+        if (slot == null || slot.generation != current) {
+            slot = new Slot(factory.get(), current);
+            slots.set(slot);
+        }
+        return slot;
+    }
+// counts one draw on the thread's slot, reseeding every RESEED_INTERVAL draws
+    private static SecureRandom draw(Slot slot) {
+        if (reseed && ++slot.draws >= RESEED_INTERVAL) {
+            slot.draws = 0;
+            try {
+                slot.random.reseed();
+            } catch (UnsupportedOperationException e) {
+// The generator cannot reseed itself: mix in fresh seed bytes
+                slot.random.setSeed(SecureRandom.getSeed(32));
+            }
+        }
+        return slot.random;
+    }
+    /**
+     * @Title: useFactory
+     * @Description: This function plugs in a generator factory.
+     * Every thread switches to a generator of the new factory
+     * on its next draw.
+     * @param newFactory
+     * Builds one generator per thread.
+     * @param reseedPeriodically
+     * Whether generators are reseeded every RESEED_INTERVAL
+     * draws.
+     */
+    public static void useFactory(Supplier<SecureRandom> newFactory,
+                                  boolean reseedPeriodically) {
+        factory = newFactory;
+        reseed = reseedPeriodically;
+        generation.incrementAndGet();
+    }
+    /**
+     * @Title: useDrbg
+     * @Description: This function switches back to the default
+     * reseeding DRBG generators.
+     */
+    public static void useDrbg() {
+        useFactory(Randomness::newDrbg, true);
+    }
+    /**
+     * @Title: useSeed
+     * @Description: This function switches to deterministic
+     * generators for reproducible benchmarks. The i-th thread to
+     * draw after this call gets a SHA1PRNG seeded with seed+i,
+     * so a single-threaded run always sees the same numbers.
+     * It must never be used for real keys or ciphertexts.
+     * @param seed
+     * The base seed.
+     */
+    public static void useSeed(long seed) {
+        AtomicLong next = new AtomicLong(seed);
+        useFactory(() -> {
+            try {
+                SecureRandom random = SecureRandom.getInstance("SHA1PRNG");
+                random.setSeed(next.getAndIncrement());
+                return random;
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }, false);
+    }
+    /**
+     * @Title: randomZN
+     * @Description: This function returns a uniform random
+     * number in Z_n.
+     * @param n
+     * The modulus.
+     * @return BigInteger A random number in [0, n).
+     */
+    public static BigInteger randomZN(BigInteger n) {
+        Slot slot = slot();
+        BigInteger r;
+        do {
+            r = new BigInteger(n.bitLength(), draw(slot));
+        } while (r.compareTo(n) >= 0);
+        return r;
+    }
+    /**
+     * @Title: randomZStarN
+     * @Description: This function returns a uniform random
+     * number in Z*_n.
+     * @param n
+     * The modulus.
+     * @return BigInteger A random number in Z*_n.
+     */
+    public static BigInteger randomZStarN(BigInteger n) {
+        Slot slot = slot();
+        BigInteger r;
+        do {
+            r = new BigInteger(n.bitLength(), draw(slot));
+        } while (r.compareTo(n) >= 0 || !r.gcd(n).equals(BigInteger.ONE));
+        return r;
+    }
+    /**
+     * @Title: randomZStarN
+     * @Description: This function returns count uniform random
+     * numbers in Z*_n drawn from one generator lookup.
+     * @param n
+     * The modulus.
+     * @param count
+     * The number of values.
+     * @return BigInteger[] The random numbers in Z*_n.
+     */
+    public static BigInteger[] randomZStarN(BigInteger n, int count) {
+        Slot slot = slot();
+        BigInteger[] rs = new BigInteger[count];
+        for (int i = 0; i < count; i++) {
+            BigInteger r;
+            do {
+                r = new BigInteger(n.bitLength(), draw(slot));
+            } while (r.compareTo(n) >= 0 || !r.gcd(n).equals(BigInteger.ONE));
+            rs[i] = r;
+        }
+        return rs;
+    }
+    private static SecureRandom newDrbg() {
+        try {
+            return SecureRandom.getInstance("DRBG");
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    }
+}
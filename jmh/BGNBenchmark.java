@@ -0,0 +1,329 @@
+package BGN;
+import Randomness.Randomness;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+/*
+ * This source code uses the JPBC (Java Pairing-Based
+ * Cryptography) library,
+ * which can be downloaded from
+ * http://gas.dia.unisa.it/projects/jpbc/
+ */
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.PairingPreProcessing;
+/**
+ * @ClassName: BGNBenchmark
+ * @Description: This is the JMH benchmark of every single BGN
+ * operation for each modulus size, built with -Pbgn -Pjmh.
+ * Every benchmark thread cycles through a ring of precomputed
+ * inputs; run with -t to measure concurrent callers.
+ * encryptWithoutTables is encrypt without the fixed-base
+ * tables of g and h. The batch operations, inner products, key
+ * store, parameter cache and key generation are in the nested
+ * benchmarks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BGNBenchmark {
+    static final int INPUTS = 64;
+    static final int MESSAGES = 10; // |m| <= 10, so products stay in [-T, T]
+    static final long RANGE = 100; // T, BGN's default message range
+    @Param({"512", "1024"})
+    public int bits;
+    private BGN.PublicKey pubkey;
+    private BGN.PrivateKey prikey;
+    private long[] ms;
+    private Element[] cs, products;
+    private BigInteger[] rs;
+    /**
+     * @ClassName: Cursor
+     * @Description: The position of one benchmark thread in the
+     * input ring.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int i;
+        int next() {
+            i = (i + 1) % INPUTS;
+            return i;
+        }
+    }
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        BGN bgn = keys(bits);
+        pubkey = bgn.getPubkey();
+        prikey = bgn.getPrikey();
+        ms = messages(INPUTS);
+        cs = BGN.encrypt(ms, pubkey);
+        products = new Element[INPUTS];
+        rs = new BigInteger[INPUTS];
+        for (int i = 0; i < INPUTS; i++) {
+            products[i] = BGN.mul2(cs[i], cs[(i + 1) % INPUTS], pubkey);
+            rs[i] = Randomness.randomZN(pubkey.getN());
+        }
+// build the fixed-base tables and discrete-log solvers outside the measurement
+        BGN.decrypt(cs[0], pubkey, prikey);
+        BGN.decrypt_mul2(products[0], pubkey, prikey);
+    }
+    /**
+     * @Title: keys
+     * @Description: This function generates a key pair with an
+     * n of bits bits from a fixed seed.
+     */
+    static BGN keys(int bits) {
+        Randomness.useSeed(1);
+        try {
+            BGN bgn = new BGN();
+            bgn.keyGeneration(bits / 2);
+            return bgn;
+        } finally {
+            Randomness.useDrbg();
+        }
+    }
+    static long[] messages(int count) {
+        long[] ms = new long[count];
+        for (int i = 0; i < count; i++) {
+            ms[i] = Randomness.get().nextInt(2 * MESSAGES + 1) - MESSAGES;
+        }
+        return ms;
+    }
+    @Benchmark
+    public Element encrypt(Cursor cursor) throws Exception {
+        return BGN.encrypt(ms[cursor.next()], pubkey);
+    }
+    @Benchmark
+    public Element encryptWithoutTables(Cursor cursor) {
+        int i = cursor.next();
+        return pubkey.getG().pow(BigInteger.valueOf(ms[i]).mod(pubkey.getN()))
+                .mul(pubkey.getH().pow(rs[i])).getImmutable();
+    }
+    @Benchmark
+    public long decrypt(Cursor cursor) throws Exception {
+        return BGN.decrypt(cs[cursor.next()], pubkey, prikey);
+    }
+    @Benchmark
+    public Element add(Cursor cursor) {
+        int i = cursor.next();
+        return BGN.add(cs[i], cs[(i + 1) % INPUTS]);
+    }
+    @Benchmark
+    public Element mul1(Cursor cursor) {
+        int i = cursor.next();
+        return BGN.mul1(cs[i], (int) ms[(i + 1) % INPUTS]);
+    }
+    @Benchmark
+    public Element mul2(Cursor cursor) {
+        int i = cursor.next();
+        return BGN.mul2(cs[i], cs[(i + 1) % INPUTS], pubkey);
+    }
+    @Benchmark
+    public long decrypt_mul2(Cursor cursor) throws Exception {
+        return BGN.decrypt_mul2(products[cursor.next()], pubkey, prikey);
+    }
+    @Benchmark
+    public Element selfBlind(Cursor cursor) {
+        int i = cursor.next();
+        return BGN.selfBlind(cs[i], rs[i], pubkey);
+    }
+    /**
+     * @ClassName: Batch
+     * @Description: The batch encryption and decryption for
+     * each modulus size, parallelism and batch size.
+     */
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Fork(1)
+    @State(Scope.Benchmark)
+    public static class Batch {
+        @Param({"512", "1024"})
+        public int bits;
+        @Param({"1", "4"})
+        public int threads;
+        @Param({"16", "256"})
+        public int batch;
+        private BGN.PublicKey pubkey;
+        private BGN.PrivateKey prikey;
+        private long[] ms;
+        private Element[] cs;
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            BGN bgn = keys(bits);
+            pubkey = bgn.getPubkey();
+            prikey = bgn.getPrikey();
+            ms = messages(batch);
+            cs = BGN.encrypt(ms, pubkey, threads);
+            BGN.decrypt(cs[0], pubkey, prikey);
+        }
+        @Benchmark
+        public Element[] encryptBatch() throws Exception {
+            return BGN.encrypt(ms, pubkey, threads);
+        }
+        @Benchmark
+        public long[] decryptBatch() throws Exception {
+            return BGN.decrypt(cs, pubkey, prikey, threads);
+        }
+    }
+    /**
+     * @ClassName: InnerProduct
+     * @Description: The inner product of two ciphertext vectors
+     * for each modulus size, parallelism and length, as a loop
+     * of mul2 multiplied together in GT, as products of
+     * pairings, and against a preprocessed vector.
+     */
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Fork(1)
+    @State(Scope.Benchmark)
+    public static class InnerProduct {
+        @Param({"512", "1024"})
+        public int bits;
+        @Param({"1", "4"})
+        public int threads;
+        @Param({"16", "256"})
+        public int length;
+        private BGN.PublicKey pubkey;
+        private Element[] xs, ys;
+        private PairingPreProcessing[] fixed;
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            pubkey = keys(bits).getPubkey();
+            xs = BGN.encrypt(messages(length), pubkey, threads);
+            ys = BGN.encrypt(messages(length), pubkey, threads);
+            fixed = BGN.preprocess(xs, pubkey, threads);
+        }
+        @Benchmark
+        public Element mul2Loop() {
+            Element sum = pubkey.getField_GT().newOneElement();
+            for (int i = 0; i < length; i++) {
+                sum.mul(BGN.mul2(xs[i], ys[i], pubkey));
+            }
+            return sum;
+        }
+        @Benchmark
+        public Element productOfPairings() throws Exception {
+            return BGN.innerProduct(xs, ys, pubkey, threads);
+        }
+        @Benchmark
+        public Element preprocessed() throws Exception {
+            return BGN.innerProduct(fixed, ys, pubkey, threads);
+        }
+    }
+    /**
+     * @ClassName: KeyStore
+     * @Description: Saving and loading a key pair for each
+     * modulus size.
+     */
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Fork(1)
+    @State(Scope.Benchmark)
+    public static class KeyStore {
+        @Param({"512", "1024"})
+        public int bits;
+        private BGN bgn;
+        private Path path;
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            bgn = keys(bits);
+            path = Files.createTempFile("bgn", ".keys");
+            bgn.saveKeys(path);
+        }
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(path);
+        }
+        @Benchmark
+        public BGN loadKeys() throws IOException {
+            BGN loaded = new BGN();
+            loaded.loadKeys(path);
+            return loaded;
+        }
+        @Benchmark
+        public void saveKeys() throws IOException {
+            bgn.saveKeys(path);
+        }
+    }
+    /**
+     * @ClassName: ParameterCache
+     * @Description: The key generation on a curve taken from a
+     * parameter cache, for each modulus size, timed one call at
+     * a time. The curve is generated before each call, outside
+     * the measurement; compare with KeyGeneration, which
+     * generates it.
+     */
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 5)
+    @Fork(1)
+    @State(Scope.Benchmark)
+    public static class ParameterCache {
+        @Param({"512", "1024"})
+        public int bits;
+        private BGNParameterCache cache;
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            cache = new BGNParameterCache(Files.createTempDirectory("bgn-params"));
+        }
+        @Setup(Level.Iteration)
+        public void fill() throws Exception {
+            cache.generate(bits / 2, 1, 1);
+        }
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(cache.getDirectory());
+        }
+        @Benchmark
+        public BGN keyGeneration() throws IOException {
+            BGN bgn = new BGN();
+            bgn.keyGeneration(bits / 2, RANGE, cache);
+            return bgn;
+        }
+    }
+    /**
+     * @ClassName: KeyGeneration
+     * @Description: The key generation for each modulus size,
+     * timed one call at a time.
+     */
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 5)
+    @Fork(1)
+    @State(Scope.Benchmark)
+    public static class KeyGeneration {
+        @Param({"512", "1024"})
+        public int bits;
+        @Benchmark
+        public BGN keyGeneration() {
+            BGN bgn = new BGN();
+            bgn.keyGeneration(bits / 2);
+            return bgn;
+        }
+    }
+}
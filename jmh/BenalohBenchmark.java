@@ -0,0 +1,143 @@
+package Benaloh;
+import Randomness.Randomness;
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//JMH benchmark of every single Benaloh operation for each modulus size; every benchmark thread
+//cycles through a ring of precomputed inputs, run with -t for concurrent callers.
+//Batch operations and key generation are the nested Batch and KeyGeneration benchmarks
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=3,time=2)
+@Measurement(iterations=5,time=2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BenalohBenchmark {
+    static final int INPUTS=64;
+    @Param({"1024","2048","3072"})
+    public int bits;
+    private Benaloh benaloh;
+    private long[] ms;
+    private BigInteger[] cs;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int i;
+        int next(){
+            i=(i+1)%INPUTS;
+            return i;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup(){
+        benaloh=keys(bits);
+        ms=messages(benaloh,INPUTS);
+        cs=new BigInteger[INPUTS];
+        for(int i=0;i<INPUTS;i++) cs[i]=benaloh.encrypt(ms[i]);
+//        build the decryption table outside the measurement
+        benaloh.decrypt(cs[0]);
+    }
+
+//    key pair with an n of bits bits from a fixed seed, so every run measures the same keys
+    static Benaloh keys(int bits){
+        Randomness.useSeed(1);
+        try{
+            Benaloh benaloh=new Benaloh();
+            benaloh.keyGeneration(bits/2);
+            return benaloh;
+        }finally{
+            Randomness.useDrbg();
+        }
+    }
+
+    static long[] messages(Benaloh benaloh,int count){
+        long R=benaloh.R.longValue();
+        long[] ms=new long[count];
+        for(int i=0;i<count;i++) ms[i]=Randomness.get().nextInt((int)Math.min(R,Integer.MAX_VALUE));
+        return ms;
+    }
+
+    @Benchmark
+    public BigInteger encrypt(Cursor cursor){
+        return benaloh.encrypt(ms[cursor.next()]);
+    }
+    @Benchmark
+    public long decrypt(Cursor cursor){
+        return benaloh.decrypt(cs[cursor.next()]);
+    }
+    @Benchmark
+    public BigInteger add(Cursor cursor){
+        int i=cursor.next();
+        return benaloh.add(cs[i],cs[(i+1)%INPUTS]);
+    }
+    @Benchmark
+    public BigInteger sub(Cursor cursor){
+        int i=cursor.next();
+        return benaloh.sub(cs[i],cs[(i+1)%INPUTS]);
+    }
+
+//    batch encryption and decryption for each modulus size, parallelism and batch size
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations=3,time=2)
+    @Measurement(iterations=5,time=2)
+    @Fork(1)
+    @State(Scope.Benchmark)
+    public static class Batch {
+        @Param({"1024","2048","3072"})
+        public int bits;
+        @Param({"1","4"})
+        public int threads;
+        @Param({"16","256"})
+        public int batch;
+        private Benaloh benaloh;
+        private long[] ms;
+        private BigInteger[] cs;
+        @Setup(Level.Trial)
+        public void setup(){
+            benaloh=keys(bits);
+            ms=messages(benaloh,batch);
+            cs=benaloh.encrypt(ms,threads);
+            benaloh.decrypt(cs[0]);
+        }
+        @Benchmark
+        public BigInteger[] encryptBatch(){
+            return benaloh.encrypt(ms,threads);
+        }
+        @Benchmark
+        public long[] decryptBatch(){
+            return benaloh.decrypt(cs,threads);
+        }
+    }
+
+//    key generation for each modulus size, timed one call at a time
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations=1)
+    @Measurement(iterations=5)
+    @Fork(1)
+    @State(Scope.Benchmark)
+    public static class KeyGeneration {
+        @Param({"1024","2048","3072"})
+        public int bits;
+        @Benchmark
+        public Benaloh keyGeneration(){
+            Benaloh benaloh=new Benaloh();
+            benaloh.keyGeneration(bits/2);
+            return benaloh;
+        }
+    }
+}
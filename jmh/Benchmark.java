@@ -0,0 +1,123 @@
+package Benchmark;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+/**
+ * @ClassName: Benchmark
+ * @Description: This compares two JMH result files written with
+ * -rf json, a baseline and a run of the same benchmarks, and
+ * reports every benchmark that got worse by more than a
+ * tolerance, so it can gate a build.
+ */
+public class Benchmark {
+    /**
+     * @ClassName: Score
+     * @Description: The primary score of one benchmark and
+     * whether a lower score is better.
+     */
+    static class Score {
+        final double value;
+        final String unit;
+        final boolean lowerIsBetter;
+        Score(double value, String unit, boolean lowerIsBetter) {
+            this.value = value;
+            this.unit = unit;
+            this.lowerIsBetter = lowerIsBetter;
+        }
+    }
+    /**
+     * @Title: compare
+     * @Description: This function compares the primary scores of
+     * a run against a baseline, benchmark by benchmark on (name,
+     * parameters, threads), and prints every one that got worse
+     * by more than the tolerance. Times (avgt, ss, sample) are
+     * worse when higher, throughputs (thrpt) when lower.
+     * @param baseline
+     * The baseline JSON.
+     * @param current
+     * The JSON of the run to check.
+     * @param tolerance
+     * The accepted slowdown, e.g. 0.1 for 10%.
+     * @return int The number of regressions.
+     * @throws IOException
+     * If a file cannot be read, there is an exception.
+     */
+    public static int compare(Path baseline, Path current, double tolerance)
+            throws IOException {
+        Map<String, Score> before = readScores(baseline);
+        Map<String, Score> after = readScores(current);
+        int regressions = 0;
+        for (Map.Entry<String, Score> row : after.entrySet()) {
+            Score old = before.get(row.getKey());
+            if (old == null) {
+                continue;
+            }
+            Score now = row.getValue();
+            double ratio = now.lowerIsBetter ? now.value / old.value
+                    : old.value / now.value;
+            if (ratio > 1 + tolerance) {
+                regressions++;
+                System.out.printf(Locale.ROOT,
+                        "REGRESSION %s: %.3f -> %.3f %s (%+.1f%%)%n",
+                        row.getKey(), old.value, now.value, now.unit,
+                        (ratio - 1) * 100);
+            }
+        }
+        return regressions;
+    }
+    private static Map<String, Score> readScores(Path json) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<String, Score>();
+        JsonArray runs;
+        try (Reader in = Files.newBufferedReader(json, StandardCharsets.UTF_8)) {
+            runs = JsonParser.parseReader(in).getAsJsonArray();
+        }
+        for (JsonElement element : runs) {
+            JsonObject run = element.getAsJsonObject();
+            StringBuilder key = new StringBuilder(run.get("benchmark").getAsString());
+            if (run.has("params")) {
+// sorted, so the key does not depend on the order JMH wrote them in
+                Map<String, String> params = new TreeMap<String, String>();
+                for (Map.Entry<String, JsonElement> p
+                        : run.getAsJsonObject("params").entrySet()) {
+                    params.put(p.getKey(), p.getValue().getAsString());
+                }
+                key.append(params);
+            }
+            key.append(" t=").append(run.get("threads").getAsInt());
+            JsonObject metric = run.getAsJsonObject("primaryMetric");
+            String mode = run.get("mode").getAsString();
+// a later run of the same benchmark replaces an earlier one
+            scores.put(key.toString(), new Score(metric.get("score").getAsDouble(),
+                    metric.get("scoreUnit").getAsString(), !mode.equals("thrpt")));
+        }
+        return scores;
+    }
+    /**
+     * @Title: main
+     * @Description: This function compares two result files,
+     * java Benchmark.Benchmark baseline.json current.json [tolerance],
+     * and exits with status 1 if anything regressed.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: Benchmark baseline.json current.json [tolerance]");
+            System.exit(2);
+        }
+        double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : 0.1;
+        int regressions = compare(Paths.get(args[0]), Paths.get(args[1]), tolerance);
+        System.out.println(regressions + " regression(s) beyond "
+                + Math.round(tolerance * 100) + "%");
+        System.exit(regressions == 0 ? 0 : 1);
+    }
+}
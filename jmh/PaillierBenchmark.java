@@ -0,0 +1,402 @@
+package Paillier;
+import Randomness.Randomness;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+/**
+ * @ClassName: PaillierBenchmark
+ * @Description: This is the JMH benchmark of every single
+ * Paillier operation for each modulus size. Every benchmark
+ * thread cycles through a ring of precomputed inputs; run with
+ * -t to measure concurrent callers. The batch operations,
+ * weighted sums, noise pool, off-heap columns, accumulator, key
+ * store and key generation are in the nested benchmarks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PaillierBenchmark {
+    static final int INPUTS = 64;
+    @Param({"1024", "2048", "3072"})
+    public int bits;
+    private Paillier.PublicKey pubkey;
+    private Paillier.PrivateKey prikey;
+    private BigInteger[] ms, cs, rs;
+    /**
+     * @ClassName: Cursor
+     * @Description: The position of one benchmark thread in the
+     * input ring.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int i;
+        int next() {
+            i = (i + 1) % INPUTS;
+            return i;
+        }
+    }
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Paillier paillier = keys(bits, 0);
+        pubkey = paillier.getPubkey();
+        prikey = paillier.getPrikey();
+        ms = new BigInteger[INPUTS];
+        cs = new BigInteger[INPUTS];
+        rs = Randomness.randomZStarN(pubkey.getN(), INPUTS);
+        for (int i = 0; i < INPUTS; i++) {
+            ms[i] = Randomness.randomZN(pubkey.getN());
+            cs[i] = Paillier.encrypt(ms[i], pubkey);
+        }
+    }
+    /**
+     * @Title: keys
+     * @Description: This function generates a key pair with an
+     * n of bits bits from a fixed seed, so every run measures
+     * the same keys.
+     */
+    static Paillier keys(int bits, int threads) {
+        Randomness.useSeed(1);
+        try {
+            Paillier paillier = new Paillier();
+// p = 2p'+1, so p' has bits/2-1 bits for an n of bits bits
+            if (threads > 0) {
+                paillier.keyGeneration(bits / 2 - 1, threads);
+            } else {
+                paillier.keyGeneration(bits / 2 - 1);
+            }
+            return paillier;
+        } finally {
+            Randomness.useDrbg();
+        }
+    }
+    @Benchmark
+    public BigInteger encrypt(Cursor cursor) throws Exception {
+        return Paillier.encrypt(ms[cursor.next()], pubkey);
+    }
+    @Benchmark
+    public BigInteger decrypt(Cursor cursor) throws Exception {
+        return Paillier.decrypt(cs[cursor.next()], pubkey, prikey);
+    }
+    @Benchmark
+    public BigInteger decryptCRT(Cursor cursor) throws Exception {
+        return Paillier.decryptCRT(cs[cursor.next()], pubkey, prikey);
+    }
+    @Benchmark
+    public BigInteger add(Cursor cursor) {
+        int i = cursor.next();
+        return Paillier.add(cs[i], cs[(i + 1) % INPUTS], pubkey);
+    }
+    @Benchmark
+    public BigInteger mul(Cursor cursor) {
+        int i = cursor.next();
+        return Paillier.mul(cs[i], ms[(i + 1) % INPUTS], pubkey);
+    }
+    @Benchmark
+    public BigInteger selfBlind(Cursor cursor) {
+        int i = cursor.next();
+        return Paillier.selfBlind(cs[i], rs[i], pubkey);
+    }
+    /**
+     * @ClassName: Batch
+     * @Description: The batch encryption and decryption for
+     * each modulus size, parallelism and batch size.
+     */
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Fork(1)
+    @State(Scope.Benchmark)
+    public static class Batch {
+        @Param({"1024", "2048", "3072"})
+        public int bits;
+        @Param({"1", "4"})
+        public int threads;
+        @Param({"16", "256"})
+        public int batch;
+        private Paillier.PublicKey pubkey;
+        private Paillier.PrivateKey prikey;
+        private BigInteger[] ms, cs;
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            Paillier paillier = keys(bits, 0);
+            pubkey = paillier.getPubkey();
+            prikey = paillier.getPrikey();
+            ms = new BigInteger[batch];
+            for (int i = 0; i < batch; i++) {
+                ms[i] = Randomness.randomZN(pubkey.getN());
+            }
+            cs = Paillier.encrypt(ms, pubkey, threads);
+        }
+        @Benchmark
+        public BigInteger[] encryptBatch() throws Exception {
+            return Paillier.encrypt(ms, pubkey, threads);
+        }
+        @Benchmark
+        public BigInteger[] decryptBatch() throws Exception {
+            return Paillier.decrypt(cs, pubkey, prikey, threads);
+        }
+    }
+    /**
+     * @ClassName: WeightedSum
+     * @Description: The homomorphic weighted sum for each
+     * modulus size and vector length, as a loop of mul and add
+     * and as one multi-exponentiation.
+     */
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Fork(1)
+    @State(Scope.Benchmark)
+    public static class WeightedSum {
+        @Param({"1024", "2048", "3072"})
+        public int bits;
+        @Param({"64", "1024"})
+        public int size;
+        private Paillier.PublicKey pubkey;
+        private BigInteger[] cs, ws;
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            pubkey = keys(bits, 0).getPubkey();
+            cs = new BigInteger[size];
+            ws = new BigInteger[size];
+            for (int i = 0; i < size; i++) {
+                cs[i] = Paillier.encrypt(Randomness.randomZN(pubkey.getN()), pubkey);
+                ws[i] = BigInteger.valueOf(Randomness.get().nextInt(1 << 16) + 1);
+            }
+        }
+        @Benchmark
+        public BigInteger mulAdd() {
+            BigInteger sum = Paillier.mul(cs[0], ws[0], pubkey);
+            for (int i = 1; i < size; i++) {
+                sum = Paillier.add(sum, Paillier.mul(cs[i], ws[i], pubkey), pubkey);
+            }
+            return sum;
+        }
+        @Benchmark
+        public BigInteger weightedSum() throws Exception {
+            return Paillier.weightedSum(cs, ws, pubkey, 1);
+        }
+    }
+    /**
+     * @ClassName: NoisePool
+     * @Description: The encryption with the noise r^n taken
+     * from a pool filled by background workers, for each
+     * modulus size. Compare with encrypt, which computes r^n on
+     * the caller's thread.
+     */
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Fork(1)
+    @State(Scope.Benchmark)
+    public static class NoisePool {
+        @Param({"1024", "2048", "3072"})
+        public int bits;
+        private BigInteger[] ms;
+        private PaillierNoisePool pool;
+        @Setup(Level.Trial)
+        public void setup() {
+            Paillier.PublicKey pubkey = keys(bits, 0).getPubkey();
+            ms = new BigInteger[INPUTS];
+            for (int i = 0; i < INPUTS; i++) {
+                ms[i] = Randomness.randomZN(pubkey.getN());
+            }
+            pool = new PaillierNoisePool(pubkey, 1024, 512, 2,
+                    PaillierNoisePool.ExhaustedPolicy.COMPUTE);
+        }
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            pool.close();
+        }
+        @Benchmark
+        public BigInteger encrypt(Cursor cursor) throws Exception {
+            return Paillier.encrypt(ms[cursor.next()], pool);
+        }
+    }
+    /**
+     * @ClassName: Column
+     * @Description: The element-wise operations of an off-heap
+     * column for each modulus size and column length, against
+     * the same loops over a BigInteger array.
+     */
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Fork(1)
+    @State(Scope.Benchmark)
+    public static class Column {
+        @Param({"1024", "2048", "3072"})
+        public int bits;
+        @Param({"1024"})
+        public int size;
+        private Paillier.PublicKey pubkey;
+        private Paillier.PrivateKey prikey;
+        private BigInteger m;
+        private BigInteger[] xs, ys;
+        private PaillierColumn x, y, out;
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            Paillier paillier = keys(bits, 0);
+            pubkey = paillier.getPubkey();
+            prikey = paillier.getPrikey();
+            m = Randomness.randomZN(pubkey.getN());
+            xs = new BigInteger[size];
+            ys = new BigInteger[size];
+            for (int i = 0; i < size; i++) {
+                xs[i] = Paillier.encrypt(Randomness.randomZN(pubkey.getN()), pubkey);
+                ys[i] = Paillier.encrypt(Randomness.randomZN(pubkey.getN()), pubkey);
+            }
+            x = PaillierColumn.of(xs, pubkey, 1);
+            y = PaillierColumn.of(ys, pubkey, 1);
+            out = new PaillierColumn(pubkey, size);
+        }
+        @Benchmark
+        public PaillierColumn add() throws Exception {
+            return x.add(y, out, 1);
+        }
+        @Benchmark
+        public BigInteger[] addArray() {
+            BigInteger[] sums = new BigInteger[size];
+            for (int i = 0; i < size; i++) {
+                sums[i] = Paillier.add(xs[i], ys[i], pubkey);
+            }
+            return sums;
+        }
+        @Benchmark
+        public PaillierColumn mul() throws Exception {
+            return x.mul(m, out, 1);
+        }
+        @Benchmark
+        public BigInteger[] decrypt() throws Exception {
+            return x.decrypt(prikey, 1);
+        }
+        @Benchmark
+        public BigInteger[] decryptArray() throws Exception {
+            return Paillier.decrypt(xs, pubkey, prikey, 1);
+        }
+    }
+    /**
+     * @ClassName: Accumulator
+     * @Description: The homomorphic sum of many ciphertexts for
+     * each modulus size, folded with add and with an
+     * accumulator.
+     */
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Fork(1)
+    @State(Scope.Benchmark)
+    public static class Accumulator {
+        @Param({"1024", "2048", "3072"})
+        public int bits;
+        @Param({"1024"})
+        public int size;
+        private Paillier.PublicKey pubkey;
+        private List<BigInteger> cs;
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            pubkey = keys(bits, 0).getPubkey();
+            cs = new ArrayList<BigInteger>(size);
+            for (int i = 0; i < size; i++) {
+                cs.add(Paillier.encrypt(Randomness.randomZN(pubkey.getN()), pubkey));
+            }
+        }
+        @Benchmark
+        public BigInteger fold() {
+            BigInteger sum = BigInteger.ONE;
+            for (BigInteger c : cs) {
+                sum = Paillier.add(sum, c, pubkey);
+            }
+            return sum;
+        }
+        @Benchmark
+        public BigInteger accumulator() {
+            return new PaillierAccumulator(pubkey).addAll(cs).result();
+        }
+    }
+    /**
+     * @ClassName: KeyStore
+     * @Description: Saving and loading a key pair for each
+     * modulus size.
+     */
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Fork(1)
+    @State(Scope.Benchmark)
+    public static class KeyStore {
+        @Param({"1024", "2048", "3072"})
+        public int bits;
+        private Paillier paillier;
+        private Path path;
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            paillier = keys(bits, 0);
+            path = Files.createTempFile("paillier", ".keys");
+            paillier.saveKeys(path);
+        }
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(path);
+        }
+        @Benchmark
+        public Paillier loadKeys() throws IOException {
+            Paillier loaded = new Paillier();
+            loaded.loadKeys(path);
+            return loaded;
+        }
+        @Benchmark
+        public void saveKeys() throws IOException {
+            paillier.saveKeys(path);
+        }
+    }
+    /**
+     * @ClassName: KeyGeneration
+     * @Description: The key generation for each modulus size
+     * and number of search threads, timed one call at a time.
+     */
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 5)
+    @Fork(1)
+    @State(Scope.Benchmark)
+    public static class KeyGeneration {
+        @Param({"1024", "2048", "3072"})
+        public int bits;
+        @Param({"1", "4"})
+        public int threads;
+        @Benchmark
+        public Paillier keyGeneration() {
+            Paillier paillier = new Paillier();
+            paillier.keyGeneration(bits / 2 - 1, threads);
+            return paillier;
+        }
+    }
+}